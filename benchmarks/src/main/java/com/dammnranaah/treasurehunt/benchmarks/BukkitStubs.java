@@ -0,0 +1,141 @@
+package com.dammnranaah.treasurehunt.benchmarks;
+
+import org.bukkit.ChunkSnapshot;
+import org.bukkit.Material;
+import org.bukkit.World;
+import org.bukkit.event.inventory.InventoryType;
+import org.bukkit.inventory.Inventory;
+import org.bukkit.inventory.ItemStack;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Proxy;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Random;
+import java.util.UUID;
+
+/**
+ * Just enough of the Bukkit API to run plugin code without a server. Each stub
+ * answers the handful of calls the benchmarked code makes and fails loudly on
+ * anything else, so a benchmark can't quietly measure a default return value.
+ */
+final class BukkitStubs {
+
+    private BukkitStubs() {
+    }
+
+    static World world(String name) {
+        UUID id = UUID.nameUUIDFromBytes(name.getBytes(StandardCharsets.UTF_8));
+        return stub(World.class, name, (proxy, method, args) -> {
+            switch (method.getName()) {
+                case "getUID":
+                    return id;
+                case "getName":
+                    return name;
+                case "getMinHeight":
+                    return -64;
+                case "getMaxHeight":
+                    return 320;
+                default:
+                    throw unsupported(World.class, method.getName());
+            }
+        });
+    }
+
+    static Inventory chestInventory(int size) {
+        ItemStack[] contents = new ItemStack[size];
+        return stub(Inventory.class, "chest inventory", (proxy, method, args) -> {
+            switch (method.getName()) {
+                case "getType":
+                    return InventoryType.CHEST;
+                case "getSize":
+                    return size;
+                case "getItem":
+                    return contents[(Integer) args[0]];
+                case "setItem":
+                    contents[(Integer) args[0]] = (ItemStack) args[1];
+                    return null;
+                case "getContents":
+                    return contents.clone();
+                case "clear":
+                    if (args == null) {
+                        Arrays.fill(contents, null);
+                    } else {
+                        contents[(Integer) args[0]] = null;
+                    }
+                    return null;
+                case "addItem":
+                    // Only reached once every slot is taken; treat the chest as unable to merge
+                    HashMap<Integer, ItemStack> leftovers = new HashMap<>();
+                    ItemStack[] items = (ItemStack[]) args[0];
+                    for (int i = 0; i < items.length; i++) {
+                        leftovers.put(i, items[i]);
+                    }
+                    return leftovers;
+                default:
+                    throw unsupported(Inventory.class, method.getName());
+            }
+        });
+    }
+
+    /**
+     * A chunk of rolling stone terrain between y 60 and 80, with some columns
+     * flooded to sea level and a few already topped by a chest.
+     */
+    static ChunkSnapshot terrain(World world, int chunkX, int chunkZ, Random random) {
+        int[] surface = new int[256];
+        boolean[] flooded = new boolean[256];
+        boolean[] chest = new boolean[256];
+        for (int column = 0; column < surface.length; column++) {
+            flooded[column] = random.nextInt(5) == 0;
+            surface[column] = flooded[column] ? 40 + random.nextInt(20) : 60 + random.nextInt(21);
+            chest[column] = !flooded[column] && random.nextInt(32) == 0;
+        }
+
+        return stub(ChunkSnapshot.class, "chunk " + chunkX + "," + chunkZ, (proxy, method, args) -> {
+            switch (method.getName()) {
+                case "getX":
+                    return chunkX;
+                case "getZ":
+                    return chunkZ;
+                case "getWorldName":
+                    return world.getName();
+                case "getBlockType":
+                    int column = ((Integer) args[2] << 4) | (Integer) args[0];
+                    int y = (Integer) args[1];
+                    if (y <= surface[column]) {
+                        return Material.STONE;
+                    } else if (flooded[column] && y <= 62) {
+                        return Material.WATER;
+                    } else if (chest[column] && y == surface[column] + 1) {
+                        return Material.CHEST;
+                    }
+                    return Material.AIR;
+                default:
+                    throw unsupported(ChunkSnapshot.class, method.getName());
+            }
+        });
+    }
+
+    private static <T> T stub(Class<T> type, String name, InvocationHandler handler) {
+        Object proxy = Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[] {type}, (self, method, args) -> {
+            if (method.getDeclaringClass() == Object.class) {
+                switch (method.getName()) {
+                    case "equals":
+                        return self == args[0];
+                    case "hashCode":
+                        return System.identityHashCode(self);
+                    default:
+                        return name;
+                }
+            }
+            return handler.invoke(self, method, args);
+        });
+        return type.cast(proxy);
+    }
+
+    private static UnsupportedOperationException unsupported(Class<?> type, String method) {
+        return new UnsupportedOperationException(type.getSimpleName() + "." + method + " is not stubbed");
+    }
+}
@@ -0,0 +1,97 @@
+package com.dammnranaah.treasurehunt.benchmarks;
+
+import com.dammnranaah.treasurehunt.managers.ChestIndex;
+import com.dammnranaah.treasurehunt.models.TreasureChest;
+import org.bukkit.Location;
+import org.bukkit.World;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Chest lookups as done by {@code ChestManager.getChestAt},
+ * {@code getNearestChest} and {@code isTreasureChunk}, which resolve the
+ * world's {@link ChestIndex} and delegate to it.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ChestLookupBenchmark {
+
+    private static final int PROBES = 1024;
+    private static final int WORLD_RADIUS = 10_000;
+
+    @Param({"10", "1000", "100000"})
+    public int chests;
+
+    private ChestIndex index;
+    private Location[] chestLocations;
+    private Location[] playerLocations;
+    private int cursor;
+
+    @Setup
+    public void setUp() {
+        World world = BukkitStubs.world("world");
+        Random random = new Random(42L);
+
+        index = new ChestIndex();
+        Location[] placed = new Location[chests];
+        for (int i = 0; i < chests; i++) {
+            placed[i] = randomLocation(world, random);
+            index.add(new TreasureChest(new UUID(random.nextLong(), random.nextLong()), placed[i], "common", 0L));
+        }
+
+        chestLocations = new Location[PROBES];
+        playerLocations = new Location[PROBES];
+        for (int i = 0; i < PROBES; i++) {
+            chestLocations[i] = placed[random.nextInt(chests)].clone();
+            playerLocations[i] = randomLocation(world, random);
+        }
+    }
+
+    private static Location randomLocation(World world, Random random) {
+        return new Location(world, random.nextInt(2 * WORLD_RADIUS) - WORLD_RADIUS, 60 + random.nextInt(21),
+                random.nextInt(2 * WORLD_RADIUS) - WORLD_RADIUS);
+    }
+
+    private int next() {
+        cursor = (cursor + 1) & (PROBES - 1);
+        return cursor;
+    }
+
+    @Benchmark
+    public TreasureChest getChestAt() {
+        return index.getAt(chestLocations[next()]);
+    }
+
+    @Benchmark
+    public TreasureChest getChestAtMiss() {
+        return index.getAt(playerLocations[next()]);
+    }
+
+    @Benchmark
+    public boolean isTreasureChunk() {
+        Location location = playerLocations[next()];
+        return index.hasChestInChunk(location.getBlockX() >> 4, location.getBlockZ() >> 4);
+    }
+
+    @Benchmark
+    public TreasureChest getNearestChest() {
+        return index.nearest(playerLocations[next()]);
+    }
+}
@@ -0,0 +1,76 @@
+package com.dammnranaah.treasurehunt.benchmarks;
+
+import com.dammnranaah.treasurehunt.managers.CompiledLootTable;
+import com.dammnranaah.treasurehunt.utils.SlotPicker;
+import org.bukkit.Material;
+import org.bukkit.inventory.Inventory;
+import org.bukkit.inventory.ItemStack;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@code LootManager.fillChest} and a single loot roll against a compiled
+ * table shaped like the default "rare" tier. Enchantments are left out because
+ * building enchanted prototypes needs the server's item factory.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LootBenchmark {
+
+    private CompiledLootTable lootTable;
+    private SlotPicker slotPicker;
+    private Inventory inventory;
+
+    @Setup
+    public void setUp() {
+        List<CompiledLootTable.LootItem> items = new ArrayList<>();
+        items.add(new CompiledLootTable.LootItem(Material.DIAMOND, 1, 3, 40));
+        items.add(new CompiledLootTable.LootItem(Material.GOLD_INGOT, 2, 8, 30));
+        items.add(new CompiledLootTable.LootItem(Material.IRON_INGOT, 4, 12, 50));
+        items.add(new CompiledLootTable.LootItem(Material.EMERALD, 1, 4, 20));
+        items.add(new CompiledLootTable.LootItem(Material.GOLDEN_APPLE, 1, 2, 10));
+        items.add(new CompiledLootTable.LootItem(Material.EXPERIENCE_BOTTLE, 4, 16, 30));
+
+        lootTable = new CompiledLootTable("rare", 4, 8, items);
+        slotPicker = new SlotPicker();
+        inventory = BukkitStubs.chestInventory(27);
+    }
+
+    @Benchmark
+    public Inventory fillChest() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        inventory.clear();
+
+        int itemCount = lootTable.rollItemCount(random);
+        slotPicker.reset(inventory);
+        for (int i = 0; i < itemCount; i++) {
+            ItemStack item = lootTable.rollItem(random);
+            if (item != null && !slotPicker.place(inventory, item, random)) {
+                break;
+            }
+        }
+        return inventory;
+    }
+
+    @Benchmark
+    public ItemStack getRandomLoot() {
+        return lootTable.rollItem(ThreadLocalRandom.current());
+    }
+}
@@ -0,0 +1,86 @@
+package com.dammnranaah.treasurehunt.benchmarks;
+
+import com.dammnranaah.treasurehunt.managers.SpawnLocationFinder;
+import org.bukkit.ChunkSnapshot;
+import org.bukkit.World;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The column scan behind the {@code spawnChests} location search, run over
+ * stub chunk snapshots with the default {@code min-y}/{@code max-y} of 40 and
+ * 120. A search tries up to 50 random columns and stops at the first hit.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SpawnSearchBenchmark {
+
+    private static final int CHUNKS_PER_SIDE = 16;
+    private static final int COLUMNS = 4096;
+    private static final int MAX_ATTEMPTS = 50;
+    private static final int MIN_Y = 40;
+    private static final int MAX_Y = 120;
+
+    private ChunkSnapshot[] chunks;
+    private int[] columnX;
+    private int[] columnZ;
+    private int cursor;
+
+    @Setup
+    public void setUp() {
+        World world = BukkitStubs.world("world");
+        Random random = new Random(42L);
+
+        chunks = new ChunkSnapshot[CHUNKS_PER_SIDE * CHUNKS_PER_SIDE];
+        for (int chunkX = 0; chunkX < CHUNKS_PER_SIDE; chunkX++) {
+            for (int chunkZ = 0; chunkZ < CHUNKS_PER_SIDE; chunkZ++) {
+                chunks[chunkX * CHUNKS_PER_SIDE + chunkZ] = BukkitStubs.terrain(world, chunkX, chunkZ, random);
+            }
+        }
+
+        columnX = new int[COLUMNS];
+        columnZ = new int[COLUMNS];
+        for (int i = 0; i < COLUMNS; i++) {
+            columnX[i] = random.nextInt(CHUNKS_PER_SIDE * 16);
+            columnZ[i] = random.nextInt(CHUNKS_PER_SIDE * 16);
+        }
+    }
+
+    @Benchmark
+    public int scanColumn() {
+        cursor = (cursor + 1) & (COLUMNS - 1);
+        return scan(columnX[cursor], columnZ[cursor]);
+    }
+
+    @Benchmark
+    public int findSpawnLocation() {
+        for (int attempt = 0; attempt < MAX_ATTEMPTS; attempt++) {
+            cursor = (cursor + 1) & (COLUMNS - 1);
+            int y = scan(columnX[cursor], columnZ[cursor]);
+            if (y != -1) {
+                return y;
+            }
+        }
+        return -1;
+    }
+
+    private int scan(int x, int z) {
+        ChunkSnapshot snapshot = chunks[(x >> 4) * CHUNKS_PER_SIDE + (z >> 4)];
+        return SpawnLocationFinder.findSpawnY(snapshot, x, z, MIN_Y, MAX_Y);
+    }
+}
@@ -0,0 +1,95 @@
+package com.dammnranaah.treasurehunt.benchmarks;
+
+import com.dammnranaah.treasurehunt.models.ChestRecord;
+import com.dammnranaah.treasurehunt.storage.BinaryChestStorage;
+import com.dammnranaah.treasurehunt.storage.ChestSnapshot;
+import com.dammnranaah.treasurehunt.storage.ChestStorage;
+import com.dammnranaah.treasurehunt.storage.YamlChestStorage;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@code ChestManager.saveChests} and {@code loadChests} as far as the disk
+ * goes: writing and reading a full snapshot in each file-based storage format.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class StorageBenchmark {
+
+    private static final String[] TIERS = {"common", "uncommon", "rare", "epic"};
+    private static final String[] WORLDS = {"world", "world_nether", "world_the_end"};
+
+    @Param({"10", "1000", "100000"})
+    public int chests;
+
+    @Param({"YAML", "BINARY"})
+    public String format;
+
+    private File directory;
+    private ChestStorage storage;
+    private ChestSnapshot snapshot;
+
+    @Setup
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("treasurehunt-bench").toFile();
+        storage = "BINARY".equals(format)
+                ? new BinaryChestStorage(new File(directory, "chests.dat"))
+                : new YamlChestStorage(new File(directory, "chests.yml"));
+
+        Random random = new Random(42L);
+        List<ChestRecord> records = new ArrayList<>(chests);
+        for (int i = 0; i < chests; i++) {
+            records.add(new ChestRecord(new UUID(random.nextLong(), random.nextLong()),
+                    WORLDS[random.nextInt(WORLDS.length)],
+                    random.nextInt(20_000) - 10_000, 40 + random.nextInt(81), random.nextInt(20_000) - 10_000,
+                    TIERS[random.nextInt(TIERS.length)], System.currentTimeMillis() - random.nextInt(3_600_000),
+                    random.nextInt(10) == 0));
+        }
+        snapshot = ChestSnapshot.of(records, 7L);
+        storage.save(snapshot);
+    }
+
+    @TearDown
+    public void tearDown() {
+        File[] files = directory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        directory.delete();
+    }
+
+    @Benchmark
+    public void saveChests() throws IOException {
+        storage.save(snapshot);
+    }
+
+    @Benchmark
+    public ChestSnapshot loadChests() throws IOException {
+        return storage.load();
+    }
+}
@@ -0,0 +1,48 @@
+package com.dammnranaah.treasurehunt.benchmarks;
+
+import com.dammnranaah.treasurehunt.utils.AliasSampler;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@code ChestManager.determineTier}: one draw from the tier sampler built
+ * from the default {@code loot.tiers} chances.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TierSelectionBenchmark {
+
+    private AliasSampler<String> tierSampler;
+
+    @Setup
+    public void setUp() {
+        Map<String, Integer> chances = new LinkedHashMap<>();
+        chances.put("common", 60);
+        chances.put("uncommon", 30);
+        chances.put("rare", 8);
+        chances.put("epic", 2);
+        tierSampler = AliasSampler.of(chances);
+    }
+
+    @Benchmark
+    public String determineTier() {
+        return tierSampler.sample(ThreadLocalRandom.current());
+    }
+}
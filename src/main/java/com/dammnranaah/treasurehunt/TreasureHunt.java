@@ -1,27 +1,20 @@
 package com.dammnranaah.treasurehunt;
 
-impo    @Override
-    public void onDisable() {
-        if (configManager != null) {
-            configManager.saveConfig();
-        }
-        
-        if (spawnTask != null) {
-            spawnTask.cancel();
-        }
-        
-        if (notificationManager != null) {
-            notificationManager.cancelAllNotifications();
-        }
-        
-        getLogger().info("TreasureHunt has been disabled!");
-    }treasurehunt.commands.CommandHandler;
+import com.dammnranaah.treasurehunt.commands.CommandHandler;
 import com.dammnranaah.treasurehunt.config.ConfigManager;
+import com.dammnranaah.treasurehunt.listeners.BlockChangeListener;
 import com.dammnranaah.treasurehunt.listeners.ChestListener;
+import com.dammnranaah.treasurehunt.listeners.WorldListener;
 import com.dammnranaah.treasurehunt.managers.ChestManager;
 import com.dammnranaah.treasurehunt.managers.LootManager;
+import com.dammnranaah.treasurehunt.managers.MetricsManager;
 import com.dammnranaah.treasurehunt.managers.NotificationManager;
+import com.dammnranaah.treasurehunt.tasks.AutosaveTask;
+import com.dammnranaah.treasurehunt.tasks.CandidateRefillTask;
 import com.dammnranaah.treasurehunt.tasks.ChestSpawnTask;
+import com.dammnranaah.treasurehunt.tasks.DespawnTask;
+import com.dammnranaah.treasurehunt.tasks.JournalCompactionTask;
+import com.dammnranaah.treasurehunt.tasks.MetricsExportTask;
 import org.bukkit.plugin.java.JavaPlugin;
 
 
@@ -32,7 +25,13 @@ public final class TreasureHunt extends JavaPlugin {
     private ChestManager chestManager;
     private LootManager lootManager;
     private NotificationManager notificationManager;
+    private MetricsManager metricsManager;
     private ChestSpawnTask spawnTask;
+    private CandidateRefillTask candidateRefillTask;
+    private DespawnTask despawnTask;
+    private JournalCompactionTask journalCompactionTask;
+    private AutosaveTask autosaveTask;
+    private MetricsExportTask metricsExportTask;
 
     @Override
     public void onEnable() {
@@ -41,11 +40,14 @@ public final class TreasureHunt extends JavaPlugin {
         configManager = new ConfigManager(this);
         configManager.loadConfig();
         
+        metricsManager = new MetricsManager(this);
         chestManager = new ChestManager(this);
         lootManager = new LootManager(this);
         notificationManager = new NotificationManager(this);
         
         getServer().getPluginManager().registerEvents(new ChestListener(this), this);
+        getServer().getPluginManager().registerEvents(new BlockChangeListener(this), this);
+        getServer().getPluginManager().registerEvents(new WorldListener(this), this);
         
         getCommand("treasurehunt").setExecutor(new CommandHandler(this));
         
@@ -53,20 +55,53 @@ public final class TreasureHunt extends JavaPlugin {
             startSpawnTask();
         }
         
+        startCandidateRefillTask();
+        
+        despawnTask = new DespawnTask(this);
+        despawnTask.runTaskTimer(this, 20L, 20L);
+        
+        journalCompactionTask = new JournalCompactionTask(this);
+        journalCompactionTask.runTaskTimer(this, 1200L, 1200L);
+        
+        startAutosaveTask();
+        startMetricsExportTask();
+        
         getLogger().info("TreasureHunt has been enabled!");
     }
 
     @Override
     public void onDisable() {
-        if (chestManager != null) {
-            chestManager.saveChests();
-        }
-        
         if (spawnTask != null) {
             spawnTask.cancel();
         }
         
+        if (candidateRefillTask != null) {
+            candidateRefillTask.cancel();
+        }
+        
+        if (despawnTask != null) {
+            despawnTask.cancel();
+        }
+        
+        if (journalCompactionTask != null) {
+            journalCompactionTask.cancel();
+        }
+        
+        if (autosaveTask != null) {
+            autosaveTask.cancel();
+        }
+        
+        if (metricsExportTask != null) {
+            metricsExportTask.cancel();
+        }
+        
+        if (chestManager != null) {
+            chestManager.saveChests();
+            chestManager.closeStorage();
+        }
+        
         if (notificationManager != null) {
+            notificationManager.flushFoundMessages();
             notificationManager.cancelCountdowns();
         }
         
@@ -94,6 +129,42 @@ public final class TreasureHunt extends JavaPlugin {
         }
     }
     
+    public void startCandidateRefillTask() {
+        if (candidateRefillTask != null) {
+            candidateRefillTask.cancel();
+        }
+        
+        int interval = configManager.getCandidatePoolRefillInterval() * 20;
+        candidateRefillTask = new CandidateRefillTask(this);
+        candidateRefillTask.runTaskTimer(this, 20L, interval);
+    }
+    
+    public void startAutosaveTask() {
+        if (autosaveTask != null) {
+            autosaveTask.cancel();
+            autosaveTask = null;
+        }
+        
+        int interval = configManager.getAutosaveInterval() * 20 * 60;
+        if (interval > 0) {
+            autosaveTask = new AutosaveTask(this);
+            autosaveTask.runTaskTimer(this, interval, interval);
+        }
+    }
+    
+    public void startMetricsExportTask() {
+        if (metricsExportTask != null) {
+            metricsExportTask.cancel();
+            metricsExportTask = null;
+        }
+        
+        int interval = configManager.getMetricsExportInterval() * 20;
+        if (interval > 0) {
+            metricsExportTask = new MetricsExportTask(this);
+            metricsExportTask.runTaskTimerAsynchronously(this, interval, interval);
+        }
+    }
+    
     public static TreasureHunt getInstance() {
         return instance;
     }
@@ -113,4 +184,8 @@ public final class TreasureHunt extends JavaPlugin {
     public NotificationManager getNotificationManager() {
         return notificationManager;
     }
+    
+    public MetricsManager getMetricsManager() {
+        return metricsManager;
+    }
 }
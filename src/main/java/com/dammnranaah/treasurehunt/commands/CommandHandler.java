@@ -1,7 +1,11 @@
 package com.dammnranaah.treasurehunt.commands;
 
 import com.dammnranaah.treasurehunt.TreasureHunt;
+import com.dammnranaah.treasurehunt.managers.MetricsManager;
+import com.dammnranaah.treasurehunt.managers.SpawnSearchStats;
 import com.dammnranaah.treasurehunt.models.TreasureChest;
+import com.dammnranaah.treasurehunt.tasks.BlockMutationPipeline;
+import com.dammnranaah.treasurehunt.utils.LatencyHistogram;
 import com.dammnranaah.treasurehunt.utils.LocationUtils;
 import org.bukkit.ChatColor;
 import org.bukkit.command.Command;
@@ -10,7 +14,10 @@ import org.bukkit.command.CommandSender;
 import org.bukkit.command.TabCompleter;
 import org.bukkit.entity.Player;
 
+import java.io.File;
+import java.io.IOException;
 import java.util.*;
+import java.util.logging.Level;
 
 public class CommandHandler implements CommandExecutor, TabCompleter {
 
@@ -33,13 +40,17 @@ public class CommandHandler implements CommandExecutor, TabCompleter {
 
         switch (subCommand) {
             case "start":
-                return handleStartCommand(sender);
+                return handleStartCommand(sender, args);
             case "stop":
                 return handleStopCommand(sender);
             case "reload":
                 return handleReloadCommand(sender);
             case "locate":
                 return handleLocateCommand(sender);
+            case "export":
+                return handleExportCommand(sender);
+            case "stats":
+                return handleStatsCommand(sender, args);
             case "help":
             default:
                 sendHelpMessage(sender);
@@ -48,26 +59,42 @@ public class CommandHandler implements CommandExecutor, TabCompleter {
     }
 
 
-    private boolean handleStartCommand(CommandSender sender) {
+    private boolean handleStartCommand(CommandSender sender, String[] args) {
         if (!sender.hasPermission("treasurehunt.start")) {
             sender.sendMessage(ChatColor.RED + "You don't have permission to use this command.");
             return true;
         }
 
         int count = plugin.getConfigManager().getChestCount();
-        int spawned = plugin.getChestManager().spawnChests(count);
-
-        if (spawned > 0) {
-            sender.sendMessage(ChatColor.GREEN + "Spawned " + spawned + " treasure chests!");
-            
+        if (args.length > 1) {
+            try {
+                count = Integer.parseInt(args[1]);
+            } catch (NumberFormatException e) {
+                count = 0;
+            }
 
-            if (plugin.getConfigManager().isBroadcastSpawnEnabled()) {
-                plugin.getServer().broadcastMessage(plugin.getConfigManager().getMessage("spawn"));
+            if (count <= 0) {
+                sender.sendMessage(ChatColor.RED + "Chest count must be a positive number.");
+                return true;
             }
-        } else {
-            sender.sendMessage(ChatColor.RED + "Could not spawn any chests. Check the console for details.");
+            sender.sendMessage(ChatColor.YELLOW + "Spawning up to " + count + " treasure chests...");
         }
 
+        plugin.getChestManager().spawnChestsAsync(count).thenAccept(spawnedChests -> {
+            int spawned = spawnedChests.size();
+
+            if (spawned > 0) {
+                sender.sendMessage(ChatColor.GREEN + "Spawned " + spawned + " treasure chests!");
+                
+
+                if (plugin.getConfigManager().isBroadcastSpawnEnabled()) {
+                    plugin.getServer().broadcastMessage(plugin.getConfigManager().getMessage("spawn"));
+                }
+            } else {
+                sender.sendMessage(ChatColor.RED + "Could not spawn any chests. Check the console for details.");
+            }
+        });
+
         return true;
     }
 
@@ -78,20 +105,34 @@ public class CommandHandler implements CommandExecutor, TabCompleter {
             return true;
         }
 
-        int removed = plugin.getChestManager().getActiveChests().size();
-        plugin.getChestManager().removeAllChests();
-
-        sender.sendMessage(ChatColor.GREEN + "Removed " + removed + " treasure chests!");
-        
+        BlockMutationPipeline removal = plugin.getChestManager().removeAllChestsAsync();
 
-        if (plugin.getConfigManager().isBroadcastSpawnEnabled()) {
-            plugin.getServer().broadcastMessage(plugin.getConfigManager().getMessage("chest-despawn"));
+        if (removal.getRemaining() > 0) {
+            sender.sendMessage(ChatColor.YELLOW + "Removing " + removal.getRemaining() + " more treasure chests"
+                    + formatEta(removal) + "...");
+            removal.onProgress(progress -> sender.sendMessage(ChatColor.YELLOW + "Removed " + progress.getCompleted()
+                    + "/" + progress.getTotal() + " treasure chests" + formatEta(progress)));
         }
 
+        removal.getFuture().thenAccept(removed -> {
+            sender.sendMessage(ChatColor.GREEN + "Removed " + removed + " treasure chests!");
+
+
+            if (plugin.getConfigManager().isBroadcastSpawnEnabled()) {
+                plugin.getServer().broadcastMessage(plugin.getConfigManager().getMessage("chest-despawn"));
+            }
+        });
+
         return true;
     }
 
 
+    private String formatEta(BlockMutationPipeline pipeline) {
+        long millis = pipeline.getEstimatedMillisRemaining();
+        return millis < 0 ? "" : ", about " + Math.max(1L, (millis + 999L) / 1000L) + "s left";
+    }
+
+
     private boolean handleReloadCommand(CommandSender sender) {
         if (!sender.hasPermission("treasurehunt.reload")) {
             sender.sendMessage(ChatColor.RED + "You don't have permission to use this command.");
@@ -99,10 +140,17 @@ public class CommandHandler implements CommandExecutor, TabCompleter {
         }
 
 
-        plugin.getConfigManager().reloadConfig();
+        if (!plugin.getConfigManager().reloadConfig()) {
+            sender.sendMessage(ChatColor.RED + "config.yml has errors, keeping the current settings. See the console for details.");
+            return true;
+        }
+        plugin.getChestManager().reloadTiers();
+        plugin.getChestManager().rescheduleDespawns();
         
 
-        plugin.getLootManager().reloadLootTables();
+        plugin.startCandidateRefillTask();
+        plugin.startAutosaveTask();
+        plugin.startMetricsExportTask();
         
 
         if (plugin.getConfigManager().isAutoSpawnEnabled()) {
@@ -117,6 +165,91 @@ public class CommandHandler implements CommandExecutor, TabCompleter {
     }
 
 
+    private boolean handleExportCommand(CommandSender sender) {
+        if (!sender.hasPermission("treasurehunt.export")) {
+            sender.sendMessage(ChatColor.RED + "You don't have permission to use this command.");
+            return true;
+        }
+
+        File exportFile = new File(plugin.getDataFolder(), "chests-export.yml");
+        try {
+            int exported = plugin.getChestManager().exportChests(exportFile);
+            sender.sendMessage(ChatColor.GREEN + "Exported " + exported + " treasure chests to " + exportFile.getName() + "!");
+        } catch (IOException e) {
+            plugin.getLogger().log(Level.SEVERE, "Could not export treasure chests", e);
+            sender.sendMessage(ChatColor.RED + "Could not export treasure chests. Check the console for details.");
+        }
+
+        return true;
+    }
+
+
+    private boolean handleStatsCommand(CommandSender sender, String[] args) {
+        if (!sender.hasPermission("treasurehunt.stats")) {
+            sender.sendMessage(ChatColor.RED + "You don't have permission to use this command.");
+            return true;
+        }
+
+        MetricsManager metrics = plugin.getMetricsManager();
+
+        if (args.length > 1 && args[1].equalsIgnoreCase("reset")) {
+            metrics.reset();
+            sender.sendMessage(ChatColor.GREEN + "TreasureHunt stats reset!");
+            return true;
+        }
+
+        sender.sendMessage(ChatColor.GOLD + "=== TreasureHunt Stats ===");
+        sender.sendMessage(ChatColor.YELLOW + "Active chests: " + ChatColor.WHITE
+                + plugin.getChestManager().getActiveChestCount());
+
+        for (MetricsManager.Counter counter : MetricsManager.Counter.values()) {
+            sender.sendMessage(ChatColor.YELLOW + counter.getName() + ": " + ChatColor.WHITE + metrics.getCount(counter));
+        }
+
+        for (MetricsManager.Timer timer : MetricsManager.Timer.values()) {
+            LatencyHistogram histogram = metrics.getHistogram(timer);
+            long count = histogram.getCount();
+            if (count == 0) {
+                continue;
+            }
+
+            sender.sendMessage(ChatColor.YELLOW + timer.getName() + ": " + ChatColor.WHITE + count + "x"
+                    + ChatColor.GRAY + " p50 " + ChatColor.WHITE + formatMillis(histogram.getValueAtQuantile(0.5))
+                    + ChatColor.GRAY + " p99 " + ChatColor.WHITE + formatMillis(histogram.getValueAtQuantile(0.99))
+                    + ChatColor.GRAY + " max " + ChatColor.WHITE + formatMillis(histogram.getMax()));
+        }
+
+        for (Map.Entry<String, SpawnSearchStats.WorldStats> entry
+                : plugin.getChestManager().getSpawnSearchStats().getWorlds().entrySet()) {
+            SpawnSearchStats.WorldStats world = entry.getValue();
+            sender.sendMessage(ChatColor.YELLOW + entry.getKey() + ": " + ChatColor.WHITE
+                    + world.getSuccesses() + "/" + world.getSearches() + ChatColor.GRAY + " searches found, "
+                    + ChatColor.WHITE + String.format(Locale.ROOT, "%.1f%%", world.getHitRate() * 100)
+                    + ChatColor.GRAY + " recent hit rate, budget " + ChatColor.WHITE + world.getAttemptBudget()
+                    + ChatColor.GRAY + ", weight " + ChatColor.WHITE + String.format(Locale.ROOT, "%.2f", world.getWeight()));
+
+            StringBuilder reasons = new StringBuilder();
+            for (SpawnSearchStats.Rejection rejection : SpawnSearchStats.Rejection.values()) {
+                long count = world.getRejections(rejection);
+                if (count > 0) {
+                    reasons.append(reasons.length() > 0 ? ", " : "").append(count).append(' ')
+                            .append(rejection.getDescription());
+                }
+            }
+            if (reasons.length() > 0) {
+                sender.sendMessage(ChatColor.GRAY + "  Rejected: " + reasons);
+            }
+        }
+
+        return true;
+    }
+
+
+    private String formatMillis(long nanos) {
+        return String.format(Locale.ROOT, "%.3fms", nanos / 1_000_000.0);
+    }
+
+
     private boolean handleLocateCommand(CommandSender sender) {
         if (!(sender instanceof Player)) {
             sender.sendMessage(ChatColor.RED + "This command can only be used by players.");
@@ -190,7 +323,7 @@ public class CommandHandler implements CommandExecutor, TabCompleter {
         sender.sendMessage(ChatColor.GOLD + "=== TreasureHunt Commands ===");
         
         if (sender.hasPermission("treasurehunt.start")) {
-            sender.sendMessage(ChatColor.YELLOW + "/treasurehunt start" + ChatColor.GRAY + " - Spawn treasure chests");
+            sender.sendMessage(ChatColor.YELLOW + "/treasurehunt start [count]" + ChatColor.GRAY + " - Spawn treasure chests");
         }
         
         if (sender.hasPermission("treasurehunt.stop")) {
@@ -205,6 +338,14 @@ public class CommandHandler implements CommandExecutor, TabCompleter {
             sender.sendMessage(ChatColor.YELLOW + "/treasurehunt locate" + ChatColor.GRAY + " - Find the nearest treasure chest");
         }
         
+        if (sender.hasPermission("treasurehunt.export")) {
+            sender.sendMessage(ChatColor.YELLOW + "/treasurehunt export" + ChatColor.GRAY + " - Export treasure chests to YAML");
+        }
+        
+        if (sender.hasPermission("treasurehunt.stats")) {
+            sender.sendMessage(ChatColor.YELLOW + "/treasurehunt stats [reset]" + ChatColor.GRAY + " - Show performance stats");
+        }
+        
         sender.sendMessage(ChatColor.YELLOW + "/treasurehunt help" + ChatColor.GRAY + " - Show this help message");
     }
 
@@ -227,6 +368,14 @@ public class CommandHandler implements CommandExecutor, TabCompleter {
                 completions.add("locate");
             }
             
+            if (sender.hasPermission("treasurehunt.export")) {
+                completions.add("export");
+            }
+            
+            if (sender.hasPermission("treasurehunt.stats")) {
+                completions.add("stats");
+            }
+            
             completions.add("help");
             
             return filterCompletions(completions, args[0]);
@@ -1,24 +1,38 @@
 package com.dammnranaah.treasurehunt.config;
 
-import org.bukkit.ChatColor;
-import org.bukkit.configuration.file.FileConfiguration;
+import org.bukkit.configuration.InvalidConfigurationException;
 import org.bukkit.configuration.file.YamlConfiguration;
 import com.dammnranaah.treasurehunt.TreasureHunt;
+import com.dammnranaah.treasurehunt.utils.MessageTemplate;
 
 import java.io.File;
+import java.io.IOException;
 import java.util.List;
 
+/**
+ * Loads config.yml into a {@link ConfigSnapshot} and publishes it through a
+ * volatile reference. Getters read the current snapshot; code that needs
+ * several settings at once should take {@link #getSnapshot()} once so they
+ * all come from the same load.
+ */
 public class ConfigManager {
 
     private final TreasureHunt plugin;
-    private FileConfiguration config;
     private File configFile;
+    private volatile ConfigSnapshot snapshot;
 
     public ConfigManager(TreasureHunt plugin) {
         this.plugin = plugin;
     }
 
-    public void loadConfig() {
+    /**
+     * Loads config.yml, keeping the current settings if it can't be read or
+     * has invalid values. Falls back to the defaults when nothing was loaded
+     * yet, so the plugin can still start.
+     *
+     * @return whether the file was loaded
+     */
+    public boolean loadConfig() {
         if (configFile == null) {
             configFile = new File(plugin.getDataFolder(), "config.yml");
         }
@@ -27,132 +41,279 @@ public class ConfigManager {
             plugin.saveResource("config.yml", false);
         }
         
-        config = YamlConfiguration.loadConfiguration(configFile);
+        try {
+            YamlConfiguration config = new YamlConfiguration();
+            config.load(configFile);
+            snapshot = ConfigSnapshot.parse(config);
+        } catch (IOException | InvalidConfigurationException e) {
+            plugin.getLogger().severe("Invalid configuration in " + configFile.getName() + ":\n" + e.getMessage());
+            if (snapshot == null) {
+                plugin.getLogger().severe("Using the default configuration until config.yml is fixed");
+                snapshot = defaults();
+            } else {
+                plugin.getLogger().severe("Keeping the previously loaded configuration");
+            }
+            return false;
+        }
+        
+        if (snapshot.getLootTables().isEmpty()) {
+            plugin.getLogger().warning("No loot tables found in config");
+        }
         plugin.getLogger().info("Configuration loaded successfully");
+        return true;
     }
 
-    public void reloadConfig() {
-        loadConfig();
+    public boolean reloadConfig() {
+        if (!loadConfig()) {
+            return false;
+        }
         plugin.getLogger().info("Configuration reloaded successfully");
+        return true;
+    }
+
+    public ConfigSnapshot getSnapshot() {
+        return snapshot;
+    }
+
+    private static ConfigSnapshot defaults() {
+        try {
+            return ConfigSnapshot.parse(new YamlConfiguration());
+        } catch (InvalidConfigurationException e) {
+            throw new IllegalStateException("Default configuration is invalid", e);
+        }
     }
 
     public boolean isAutoSpawnEnabled() {
-        return config.getBoolean("chest-spawn.auto-spawn", true);
+        return snapshot.isAutoSpawnEnabled();
     }
 
 
     public int getSpawnInterval() {
-        return config.getInt("chest-spawn.interval", 30);
+        return snapshot.getSpawnInterval();
     }
 
 
     public int getChestCount() {
-        return config.getInt("chest-spawn.count", 3);
+        return snapshot.getChestCount();
     }
 
 
     public int getMaxChests() {
-        return config.getInt("chest-spawn.max-chests", 10);
+        return snapshot.getMaxChests();
     }
 
 
     public boolean isDespawnEnabled() {
-        return config.getBoolean("chest-spawn.despawn-enabled", true);
+        return snapshot.isDespawnEnabled();
     }
 
 
     public int getDespawnTime() {
-        return config.getInt("chest-spawn.despawn-time", 60);
+        return snapshot.getDespawnTime();
     }
 
 
     public List<String> getEnabledWorlds() {
-        return config.getStringList("chest-spawn.enabled-worlds");
+        return snapshot.getEnabledWorlds();
     }
 
 
     public int getMinDistance() {
-        return config.getInt("chest-spawn.min-distance", 100);
+        return snapshot.getMinDistance();
     }
 
 
     public int getMaxDistance() {
-        return config.getInt("chest-spawn.max-distance", 2000);
+        return snapshot.getMaxDistance();
     }
 
 
     public int getMinY() {
-        return config.getInt("chest-spawn.min-y", 40);
+        return snapshot.getMinY();
     }
 
 
     public int getMaxY() {
-        return config.getInt("chest-spawn.max-y", 120);
+        return snapshot.getMaxY();
     }
 
 
     public boolean requireSolidGround() {
-        return config.getBoolean("chest-spawn.require-solid-ground", true);
+        return snapshot.requireSolidGround();
+    }
+
+
+    public boolean isAsyncSearchEnabled() {
+        return snapshot.isAsyncSearchEnabled();
+    }
+
+
+    public int getAsyncSearchColumnsPerTick() {
+        return snapshot.getAsyncSearchColumnsPerTick();
+    }
+
+
+    public int getSpawnTickBudget() {
+        return snapshot.getSpawnTickBudget();
+    }
+
+
+    public int getMutationTickBudget() {
+        return snapshot.getMutationTickBudget();
+    }
+
+
+    public int getHeightCacheChunks() {
+        return snapshot.getHeightCacheChunks();
+    }
+
+
+    public int getCandidatePoolSize() {
+        return snapshot.getCandidatePoolSize();
+    }
+
+
+    public int getCandidatePoolRefillInterval() {
+        return snapshot.getCandidatePoolRefillInterval();
     }
 
 
     public boolean isBroadcastSpawnEnabled() {
-        return config.getBoolean("notifications.broadcast-spawn", true);
+        return snapshot.isBroadcastSpawnEnabled();
     }
 
 
     public boolean isShowCountdownEnabled() {
-        return config.getBoolean("notifications.show-countdown", true);
+        return snapshot.isShowCountdownEnabled();
     }
 
 
     public List<Integer> getCountdownTimes() {
-        return config.getIntegerList("notifications.countdown-times");
+        return snapshot.getCountdownTimes();
     }
 
 
     public String getMessage(String path) {
-        String message = config.getString("notifications.messages." + path, "");
-        return ChatColor.translateAlternateColorCodes('&', message);
+        return snapshot.getMessageTemplate(path).getText();
+    }
+
+
+    public MessageTemplate getMessageTemplate(String path) {
+        return snapshot.getMessageTemplate(path);
+    }
+
+
+    public int getFoundCoalesceTicks() {
+        return snapshot.getFoundCoalesceTicks();
     }
 
 
     public int getLocateCooldown() {
-        return config.getInt("commands.locate-cooldown", 300);
+        return snapshot.getLocateCooldown();
     }
 
 
     public boolean isLocatePenaltyEnabled() {
-        return config.getBoolean("commands.locate-penalty", true);
+        return snapshot.isLocatePenaltyEnabled();
     }
 
 
     public boolean reduceLocateLootQuality() {
-        return config.getBoolean("commands.locate-penalty-options.reduce-loot-quality", true);
+        return snapshot.reduceLocateLootQuality();
     }
 
 
     public boolean broadcastLocateUsage() {
-        return config.getBoolean("commands.locate-penalty-options.broadcast-usage", true);
+        return snapshot.broadcastLocateUsage();
     }
 
 
     public boolean areGuardsEnabled() {
-        return config.getBoolean("guards.enabled", true);
+        return snapshot.areGuardsEnabled();
     }
 
 
     public int getGuardChance() {
-        return config.getInt("guards.chance", 50);
+        return snapshot.getGuardChance();
     }
 
 
     public String getStorageType() {
-        return config.getString("storage.type", "YAML").toUpperCase();
+        return snapshot.getStorageType();
+    }
+
+
+    public int getAutosaveInterval() {
+        return snapshot.getAutosaveInterval();
+    }
+
+
+    public int getMetricsExportInterval() {
+        return snapshot.getMetricsExportInterval();
+    }
+
+
+    public String getStorageServerId() {
+        return snapshot.getStorageServerId();
+    }
+
+
+    public String getStorageTablePrefix() {
+        return snapshot.getStorageTablePrefix();
+    }
+
+
+    public int getStoragePoolSize() {
+        return snapshot.getStoragePoolSize();
+    }
+
+
+    public int getStorageBatchSize() {
+        return snapshot.getStorageBatchSize();
+    }
+
+
+    public String getMysqlHost() {
+        return snapshot.getMysqlHost();
+    }
+
+
+    public int getMysqlPort() {
+        return snapshot.getMysqlPort();
+    }
+
+
+    public String getMysqlDatabase() {
+        return snapshot.getMysqlDatabase();
+    }
+
+
+    public String getMysqlUsername() {
+        return snapshot.getMysqlUsername();
+    }
+
+
+    public String getMysqlPassword() {
+        return snapshot.getMysqlPassword();
+    }
+
+
+    public String getSqliteFile() {
+        return snapshot.getSqliteFile();
+    }
+
+
+    public boolean isJournalEnabled() {
+        return snapshot.isJournalEnabled();
+    }
+
+
+    public int getJournalCompactThreshold() {
+        return snapshot.getJournalCompactThreshold();
     }
 
 
     public boolean isDebugEnabled() {
-        return config.getBoolean("debug.enabled", false);
+        return snapshot.isDebugEnabled();
     }
 }
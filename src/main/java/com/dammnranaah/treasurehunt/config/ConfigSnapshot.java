@@ -0,0 +1,615 @@
+package com.dammnranaah.treasurehunt.config;
+
+import com.dammnranaah.treasurehunt.managers.CompiledLootTable;
+import com.dammnranaah.treasurehunt.utils.MessageTemplate;
+import org.bukkit.Material;
+import org.bukkit.NamespacedKey;
+import org.bukkit.Registry;
+import org.bukkit.configuration.ConfigurationSection;
+import org.bukkit.configuration.InvalidConfigurationException;
+import org.bukkit.configuration.MemoryConfiguration;
+import org.bukkit.enchantments.Enchantment;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Every setting of config.yml, parsed and checked once per (re)load. Fields
+ * are final and lists and maps unmodifiable, so a snapshot can be read from
+ * any thread without further lookups in the YAML tree. Loot tables are
+ * compiled here too, so parsing must happen on the main thread.
+ */
+public final class ConfigSnapshot {
+
+    private static final List<String> STORAGE_TYPES = Arrays.asList("YAML", "BINARY", "MYSQL", "SQLITE");
+
+    private final boolean autoSpawn;
+    private final int spawnInterval;
+    private final int chestCount;
+    private final int maxChests;
+    private final boolean despawnEnabled;
+    private final int despawnTime;
+    private final List<String> enabledWorlds;
+    private final int minDistance;
+    private final int maxDistance;
+    private final int minY;
+    private final int maxY;
+    private final boolean requireSolidGround;
+    private final boolean asyncSearch;
+    private final int asyncSearchColumnsPerTick;
+    private final int spawnTickBudget;
+    private final int mutationTickBudget;
+    private final int heightCacheChunks;
+    private final int candidatePoolSize;
+    private final int candidatePoolRefillInterval;
+
+    private final Map<String, Integer> tierChances;
+    private final boolean useVanillaLoot;
+    private final Map<String, CompiledLootTable> lootTables;
+
+    private final boolean broadcastSpawn;
+    private final boolean showCountdown;
+    private final List<Integer> countdownTimes;
+    private final int foundCoalesceTicks;
+    private final Map<String, MessageTemplate> messages;
+
+    private final int locateCooldown;
+    private final boolean locatePenalty;
+    private final boolean reduceLocateLootQuality;
+    private final boolean broadcastLocateUsage;
+
+    private final boolean guardsEnabled;
+    private final int guardChance;
+
+    private final String storageType;
+    private final int autosaveInterval;
+    private final String storageServerId;
+    private final String storageTablePrefix;
+    private final int storagePoolSize;
+    private final int storageBatchSize;
+    private final String mysqlHost;
+    private final int mysqlPort;
+    private final String mysqlDatabase;
+    private final String mysqlUsername;
+    private final String mysqlPassword;
+    private final String sqliteFile;
+    private final boolean journalEnabled;
+    private final int journalCompactThreshold;
+
+    private final int metricsExportInterval;
+    private final boolean debug;
+
+    private ConfigSnapshot(Reader in) {
+        autoSpawn = in.getBoolean("chest-spawn.auto-spawn", true);
+        spawnInterval = in.getInt("chest-spawn.interval", 30, 1, Integer.MAX_VALUE);
+        chestCount = in.getInt("chest-spawn.count", 3, 0, Integer.MAX_VALUE);
+        maxChests = in.getInt("chest-spawn.max-chests", 10, 0, Integer.MAX_VALUE);
+        despawnEnabled = in.getBoolean("chest-spawn.despawn-enabled", true);
+        despawnTime = in.getInt("chest-spawn.despawn-time", 60, 1, Integer.MAX_VALUE);
+        enabledWorlds = in.getStringList("chest-spawn.enabled-worlds");
+        minDistance = in.getInt("chest-spawn.min-distance", 100, 0, Integer.MAX_VALUE);
+        maxDistance = in.getInt("chest-spawn.max-distance", 2000, 0, Integer.MAX_VALUE);
+        minY = in.getInt("chest-spawn.min-y", 40, Integer.MIN_VALUE, Integer.MAX_VALUE);
+        maxY = in.getInt("chest-spawn.max-y", 120, Integer.MIN_VALUE, Integer.MAX_VALUE);
+        requireSolidGround = in.getBoolean("chest-spawn.require-solid-ground", true);
+        asyncSearch = in.getBoolean("chest-spawn.async-search", true);
+        asyncSearchColumnsPerTick = in.getInt("chest-spawn.async-search-columns-per-tick", 4, 1, Integer.MAX_VALUE);
+        spawnTickBudget = in.getInt("chest-spawn.spawn-tick-budget-ms", 5, 0, Integer.MAX_VALUE);
+        mutationTickBudget = in.getInt("chest-spawn.mutation-tick-budget-ms", 5, 0, Integer.MAX_VALUE);
+        heightCacheChunks = in.getInt("chest-spawn.height-cache-chunks", 1024, 0, Integer.MAX_VALUE);
+        candidatePoolSize = in.getInt("chest-spawn.candidate-pool-size", 5, 0, Integer.MAX_VALUE);
+        candidatePoolRefillInterval = in.getInt("chest-spawn.candidate-pool-refill-interval", 10, 1, Integer.MAX_VALUE);
+
+        if (maxDistance < minDistance) {
+            in.error("chest-spawn.max-distance", "must not be less than min-distance (" + minDistance + ")");
+        }
+        if (maxY < minY) {
+            in.error("chest-spawn.max-y", "must not be less than min-y (" + minY + ")");
+        }
+
+        tierChances = in.getTierChances("loot.tiers");
+        useVanillaLoot = in.getBoolean("loot.use-vanilla-loot", true);
+        lootTables = in.getLootTables("loot.items", "loot.tiers");
+
+        broadcastSpawn = in.getBoolean("notifications.broadcast-spawn", true);
+        showCountdown = in.getBoolean("notifications.show-countdown", true);
+        countdownTimes = in.getPositiveIntList("notifications.countdown-times");
+        foundCoalesceTicks = in.getInt("notifications.found-coalesce-ticks", 40, 0, Integer.MAX_VALUE);
+        messages = in.getMessages("notifications.messages");
+
+        locateCooldown = in.getInt("commands.locate-cooldown", 300, 0, Integer.MAX_VALUE);
+        locatePenalty = in.getBoolean("commands.locate-penalty", true);
+        reduceLocateLootQuality = in.getBoolean("commands.locate-penalty-options.reduce-loot-quality", true);
+        broadcastLocateUsage = in.getBoolean("commands.locate-penalty-options.broadcast-usage", true);
+
+        guardsEnabled = in.getBoolean("guards.enabled", true);
+        guardChance = in.getInt("guards.chance", 50, 0, 100);
+
+        storageType = in.getString("storage.type", "YAML").toUpperCase(Locale.ROOT);
+        if (!STORAGE_TYPES.contains(storageType)) {
+            in.error("storage.type", "must be one of " + String.join(", ", STORAGE_TYPES));
+        }
+        autosaveInterval = in.getInt("storage.autosave-interval", 5, 0, Integer.MAX_VALUE);
+        storageServerId = in.getString("storage.server-id", "default");
+        storageTablePrefix = in.getString("storage.mysql.table-prefix", "th_");
+        storagePoolSize = in.getInt("storage.pool-size", 4, 1, Integer.MAX_VALUE);
+        storageBatchSize = in.getInt("storage.batch-size", 100, 1, Integer.MAX_VALUE);
+        mysqlHost = in.getString("storage.mysql.host", "localhost");
+        mysqlPort = in.getInt("storage.mysql.port", 3306, 1, 65535);
+        mysqlDatabase = in.getString("storage.mysql.database", "treasurehunt");
+        mysqlUsername = in.getString("storage.mysql.username", "root");
+        mysqlPassword = in.getString("storage.mysql.password", "");
+        sqliteFile = in.getString("storage.sqlite.file", "chests.db");
+        journalEnabled = in.getBoolean("storage.journal.enabled", true);
+        journalCompactThreshold = in.getInt("storage.journal.compact-threshold", 1000, 1, Integer.MAX_VALUE);
+
+        metricsExportInterval = in.getInt("metrics.export-interval", 60, 0, Integer.MAX_VALUE);
+        debug = in.getBoolean("debug.enabled", false);
+    }
+
+    /**
+     * Parses and checks the configuration, listing every problem found in
+     * the exception's message rather than stopping at the first.
+     */
+    public static ConfigSnapshot parse(ConfigurationSection config) throws InvalidConfigurationException {
+        Reader reader = new Reader(config);
+        ConfigSnapshot snapshot = new ConfigSnapshot(reader);
+        if (!reader.errors.isEmpty()) {
+            throw new InvalidConfigurationException(String.join("\n", reader.errors));
+        }
+        return snapshot;
+    }
+
+    public boolean isAutoSpawnEnabled() {
+        return autoSpawn;
+    }
+
+    public int getSpawnInterval() {
+        return spawnInterval;
+    }
+
+    public int getChestCount() {
+        return chestCount;
+    }
+
+    public int getMaxChests() {
+        return maxChests;
+    }
+
+    public boolean isDespawnEnabled() {
+        return despawnEnabled;
+    }
+
+    public int getDespawnTime() {
+        return despawnTime;
+    }
+
+    public List<String> getEnabledWorlds() {
+        return enabledWorlds;
+    }
+
+    public int getMinDistance() {
+        return minDistance;
+    }
+
+    public int getMaxDistance() {
+        return maxDistance;
+    }
+
+    public int getMinY() {
+        return minY;
+    }
+
+    public int getMaxY() {
+        return maxY;
+    }
+
+    public boolean requireSolidGround() {
+        return requireSolidGround;
+    }
+
+    public boolean isAsyncSearchEnabled() {
+        return asyncSearch;
+    }
+
+    public int getAsyncSearchColumnsPerTick() {
+        return asyncSearchColumnsPerTick;
+    }
+
+    public int getSpawnTickBudget() {
+        return spawnTickBudget;
+    }
+
+    public int getMutationTickBudget() {
+        return mutationTickBudget;
+    }
+
+    public int getHeightCacheChunks() {
+        return heightCacheChunks;
+    }
+
+    public int getCandidatePoolSize() {
+        return candidatePoolSize;
+    }
+
+    public int getCandidatePoolRefillInterval() {
+        return candidatePoolRefillInterval;
+    }
+
+    /**
+     * Relative chance of each tier, the built-in tiers included.
+     */
+    public Map<String, Integer> getTierChances() {
+        return tierChances;
+    }
+
+    public boolean isVanillaLootEnabled() {
+        return useVanillaLoot;
+    }
+
+    /**
+     * The tier's loot table by lower-case tier name, or null.
+     */
+    public CompiledLootTable getLootTable(String tier) {
+        return lootTables.get(tier.toLowerCase(Locale.ROOT));
+    }
+
+    public Map<String, CompiledLootTable> getLootTables() {
+        return lootTables;
+    }
+
+    public boolean isBroadcastSpawnEnabled() {
+        return broadcastSpawn;
+    }
+
+    public boolean isShowCountdownEnabled() {
+        return showCountdown;
+    }
+
+    public List<Integer> getCountdownTimes() {
+        return countdownTimes;
+    }
+
+    public int getFoundCoalesceTicks() {
+        return foundCoalesceTicks;
+    }
+
+    public MessageTemplate getMessageTemplate(String path) {
+        return messages.getOrDefault(path, MessageTemplate.EMPTY);
+    }
+
+    public int getLocateCooldown() {
+        return locateCooldown;
+    }
+
+    public boolean isLocatePenaltyEnabled() {
+        return locatePenalty;
+    }
+
+    public boolean reduceLocateLootQuality() {
+        return reduceLocateLootQuality;
+    }
+
+    public boolean broadcastLocateUsage() {
+        return broadcastLocateUsage;
+    }
+
+    public boolean areGuardsEnabled() {
+        return guardsEnabled;
+    }
+
+    public int getGuardChance() {
+        return guardChance;
+    }
+
+    public String getStorageType() {
+        return storageType;
+    }
+
+    public int getAutosaveInterval() {
+        return autosaveInterval;
+    }
+
+    public String getStorageServerId() {
+        return storageServerId;
+    }
+
+    public String getStorageTablePrefix() {
+        return storageTablePrefix;
+    }
+
+    public int getStoragePoolSize() {
+        return storagePoolSize;
+    }
+
+    public int getStorageBatchSize() {
+        return storageBatchSize;
+    }
+
+    public String getMysqlHost() {
+        return mysqlHost;
+    }
+
+    public int getMysqlPort() {
+        return mysqlPort;
+    }
+
+    public String getMysqlDatabase() {
+        return mysqlDatabase;
+    }
+
+    public String getMysqlUsername() {
+        return mysqlUsername;
+    }
+
+    public String getMysqlPassword() {
+        return mysqlPassword;
+    }
+
+    public String getSqliteFile() {
+        return sqliteFile;
+    }
+
+    public boolean isJournalEnabled() {
+        return journalEnabled;
+    }
+
+    public int getJournalCompactThreshold() {
+        return journalCompactThreshold;
+    }
+
+    public int getMetricsExportInterval() {
+        return metricsExportInterval;
+    }
+
+    public boolean isDebugEnabled() {
+        return debug;
+    }
+
+    /**
+     * Reads values with their defaults, collecting a message for each one
+     * that has the wrong type or is out of range.
+     */
+    private static final class Reader {
+        private final ConfigurationSection config;
+        private final List<String> errors = new ArrayList<>();
+
+        private Reader(ConfigurationSection config) {
+            this.config = config;
+        }
+
+        private void error(String path, String problem) {
+            errors.add(path + " " + problem);
+        }
+
+        private boolean getBoolean(String path, boolean def) {
+            if (config.isSet(path) && !config.isBoolean(path)) {
+                error(path, "must be true or false");
+                return def;
+            }
+            return config.getBoolean(path, def);
+        }
+
+        private int getInt(String path, int def, int min, int max) {
+            return getInt(config, path, path, def, min, max);
+        }
+
+        private int getInt(ConfigurationSection section, String path, String label, int def, int min, int max) {
+            if (section.isSet(path) && !section.isInt(path)) {
+                error(label, "must be a whole number");
+                return def;
+            }
+
+            int value = section.getInt(path, def);
+            if (value < min || value > max) {
+                error(label, max == Integer.MAX_VALUE
+                        ? "must be at least " + min
+                        : "must be between " + min + " and " + max);
+                return def;
+            }
+            return value;
+        }
+
+        private String getString(String path, String def) {
+            return getString(config, path, path, def);
+        }
+
+        private String getString(ConfigurationSection section, String path, String label, String def) {
+            if (!isScalar(section, path)) {
+                error(label, "must be text");
+                return def;
+            }
+            return section.getString(path, def);
+        }
+
+        private List<String> getStringList(String path) {
+            if (config.isSet(path) && !config.isList(path)) {
+                error(path, "must be a list");
+                return Collections.emptyList();
+            }
+            return Collections.unmodifiableList(new ArrayList<>(config.getStringList(path)));
+        }
+
+        private List<Integer> getPositiveIntList(String path) {
+            if (config.isSet(path) && !config.isList(path)) {
+                error(path, "must be a list");
+                return Collections.emptyList();
+            }
+
+            List<Integer> values = new ArrayList<>();
+            for (Object value : config.getList(path, Collections.emptyList())) {
+                if (value instanceof Integer && (Integer) value > 0) {
+                    values.add((Integer) value);
+                } else {
+                    error(path, "must only contain whole numbers above 0, found " + value);
+                }
+            }
+            return Collections.unmodifiableList(values);
+        }
+
+        private Map<String, MessageTemplate> getMessages(String path) {
+            ConfigurationSection section = config.getConfigurationSection(path);
+            if (section == null) {
+                return Collections.emptyMap();
+            }
+
+            Map<String, MessageTemplate> compiled = new HashMap<>();
+
+            for (String key : section.getKeys(false)) {
+                if (isScalar(section, key)) {
+                    compiled.put(key, MessageTemplate.compile(section.getString(key)));
+                } else {
+                    error(path + "." + key, "must be text");
+                }
+            }
+            return Collections.unmodifiableMap(compiled);
+        }
+
+        private Map<String, Integer> getTierChances(String path) {
+            Map<String, Integer> chances = new LinkedHashMap<>();
+            chances.put("common", 60);
+            chances.put("uncommon", 30);
+            chances.put("rare", 8);
+            chances.put("epic", 2);
+
+            ConfigurationSection tiers = getSection(path);
+            if (tiers != null) {
+                for (String tier : tiers.getKeys(false)) {
+                    int chance = getInt(tiers, tier + ".chance", path + "." + tier + ".chance", 0, 0, Integer.MAX_VALUE);
+                    if (chance > 0) {
+                        chances.put(tier, chance);
+                    }
+                }
+            }
+            return Collections.unmodifiableMap(chances);
+        }
+
+        private Map<String, CompiledLootTable> getLootTables(String path, String tiersPath) {
+            ConfigurationSection items = getSection(path);
+            if (items == null) {
+                return Collections.emptyMap();
+            }
+
+            Map<String, CompiledLootTable> tables = new HashMap<>();
+            for (String tier : items.getKeys(false)) {
+                String tierPath = tiersPath + "." + tier;
+                int minItems = getInt(tierPath + ".min-items", 2, 0, Integer.MAX_VALUE);
+                int maxItems = getInt(tierPath + ".max-items", 5, 0, Integer.MAX_VALUE);
+                if (maxItems < minItems) {
+                    error(tierPath + ".max-items", "must not be less than min-items (" + minItems + ")");
+                }
+
+                List<CompiledLootTable.LootItem> lootItems = new ArrayList<>();
+                for (Map.Entry<String, ConfigurationSection> entry : getEntries(items, tier, path + "." + tier).entrySet()) {
+                    CompiledLootTable.LootItem item = getLootItem(entry.getValue(), entry.getKey());
+                    if (item != null) {
+                        lootItems.add(item);
+                    }
+                }
+                tables.put(tier.toLowerCase(Locale.ROOT), new CompiledLootTable(tier, minItems, maxItems, lootItems));
+            }
+            return Collections.unmodifiableMap(tables);
+        }
+
+        private CompiledLootTable.LootItem getLootItem(ConfigurationSection section, String label) {
+            String materialName = getString(section, "item", label + ".item", null);
+            Material material = materialName != null ? Material.matchMaterial(materialName) : null;
+            if (material == null) {
+                error(label + ".item", materialName == null ? "is missing" : "is not a known item: " + materialName);
+            }
+
+            int[] amount = getRange(section, "amount", label + ".amount");
+            int chance = getInt(section, "chance", label + ".chance", 100, 0, Integer.MAX_VALUE);
+            CompiledLootTable.LootItem item = material != null && amount != null
+                    ? new CompiledLootTable.LootItem(material, amount[0], amount[1], chance)
+                    : null;
+
+            for (Map.Entry<String, ConfigurationSection> entry
+                    : getEntries(section, "enchantments", label + ".enchantments").entrySet()) {
+                ConfigurationSection enchantmentSection = entry.getValue();
+                String enchantmentLabel = entry.getKey();
+                String type = getString(enchantmentSection, "type", enchantmentLabel + ".type", null);
+                Enchantment enchantment = type != null
+                        ? Registry.ENCHANTMENT.get(NamespacedKey.minecraft(type.toLowerCase(Locale.ROOT)))
+                        : null;
+                if (enchantment == null) {
+                    error(enchantmentLabel + ".type", type == null ? "is missing" : "is not a known enchantment: " + type);
+                }
+
+                int[] level = getRange(enchantmentSection, "level", enchantmentLabel + ".level");
+                int enchantmentChance = getInt(enchantmentSection, "chance", enchantmentLabel + ".chance", 100, 0, 100);
+                if (item != null && enchantment != null && level != null) {
+                    item.addEnchantment(enchantment, level[0], level[1], enchantmentChance);
+                }
+            }
+            return item;
+        }
+
+        /**
+         * A positive "min-max" or single number range, defaulting to 1.
+         */
+        private int[] getRange(ConfigurationSection section, String path, String label) {
+            String value = getString(section, path, label, "1");
+            String[] parts = value.split("-", -1);
+            try {
+                int min = Integer.parseInt(parts[0].trim());
+                int max = parts.length == 2 ? Integer.parseInt(parts[1].trim()) : min;
+                if (parts.length <= 2 && min >= 1 && max >= min) {
+                    return new int[] {min, max};
+                }
+            } catch (NumberFormatException ignored) {
+            }
+
+            error(label, "must be a number or a range like 1-3, found " + value);
+            return null;
+        }
+
+        /**
+         * Entries of a list of maps (as the default config writes them) or of
+         * a section, by label for error messages.
+         */
+        private Map<String, ConfigurationSection> getEntries(ConfigurationSection parent, String path, String label) {
+            Map<String, ConfigurationSection> entries = new LinkedHashMap<>();
+
+            if (parent.isConfigurationSection(path)) {
+                ConfigurationSection section = parent.getConfigurationSection(path);
+                for (String key : section.getKeys(false)) {
+                    if (section.isConfigurationSection(key)) {
+                        entries.put(label + "." + key, section.getConfigurationSection(key));
+                    } else {
+                        error(label + "." + key, "must be a section");
+                    }
+                }
+            } else if (parent.isList(path)) {
+                MemoryConfiguration holder = new MemoryConfiguration();
+                int index = 0;
+                for (Map<?, ?> map : parent.getMapList(path)) {
+                    entries.put(label + "[" + index + "]", holder.createSection(String.valueOf(index), map));
+                    index++;
+                }
+            } else if (parent.isSet(path)) {
+                error(label, "must be a list");
+            }
+            return entries;
+        }
+
+        private ConfigurationSection getSection(String path) {
+            if (config.isSet(path) && !config.isConfigurationSection(path)) {
+                error(path, "must be a section");
+                return null;
+            }
+            return config.getConfigurationSection(path);
+        }
+
+        // Numbers and booleans are fine where text is expected, as getString converts them
+        private static boolean isScalar(ConfigurationSection section, String path) {
+            return !section.isConfigurationSection(path) && !section.isList(path);
+        }
+    }
+}
@@ -0,0 +1,71 @@
+package com.dammnranaah.treasurehunt.listeners;
+
+import com.dammnranaah.treasurehunt.TreasureHunt;
+import org.bukkit.block.Block;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+import org.bukkit.event.block.BlockBreakEvent;
+import org.bukkit.event.block.BlockExplodeEvent;
+import org.bukkit.event.block.BlockPlaceEvent;
+import org.bukkit.event.entity.EntityExplodeEvent;
+
+import java.util.List;
+
+
+public class BlockChangeListener implements Listener {
+
+    private final TreasureHunt plugin;
+
+    public BlockChangeListener(TreasureHunt plugin) {
+        this.plugin = plugin;
+    }
+
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onBlockPlace(BlockPlaceEvent event) {
+        blockChanged(event.getBlock());
+    }
+
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onBlockBreak(BlockBreakEvent event) {
+        blockChanged(event.getBlock());
+    }
+
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onBlockExplode(BlockExplodeEvent event) {
+        blocksChanged(event.blockList());
+    }
+
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onEntityExplode(EntityExplodeEvent event) {
+        blocksChanged(event.blockList());
+    }
+
+
+    private void blocksChanged(List<Block> blocks) {
+        int lastChunkX = Integer.MIN_VALUE;
+        int lastChunkZ = Integer.MIN_VALUE;
+
+        for (Block block : blocks) {
+            int chunkX = block.getX() >> 4;
+            int chunkZ = block.getZ() >> 4;
+            if (chunkX != lastChunkX || chunkZ != lastChunkZ) {
+                blockChanged(block);
+                lastChunkX = chunkX;
+                lastChunkZ = chunkZ;
+            } else {
+                plugin.getChestManager().getColumnHeightCache().invalidate(block.getWorld(), block.getX(), block.getZ());
+            }
+        }
+    }
+
+
+    private void blockChanged(Block block) {
+        plugin.getChestManager().getCandidatePool().invalidateChunk(block.getWorld(), block.getX() >> 4, block.getZ() >> 4);
+        plugin.getChestManager().getColumnHeightCache().invalidate(block.getWorld(), block.getX(), block.getZ());
+    }
+}
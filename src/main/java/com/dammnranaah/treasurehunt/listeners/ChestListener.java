@@ -1,9 +1,11 @@
 package com.dammnranaah.treasurehunt.listeners;
 
 import com.dammnranaah.treasurehunt.TreasureHunt;
+import com.dammnranaah.treasurehunt.managers.MetricsManager;
 import com.dammnranaah.treasurehunt.models.TreasureChest;
 import org.bukkit.Bukkit;
 import org.bukkit.ChatColor;
+import org.bukkit.Location;
 import org.bukkit.Material;
 import org.bukkit.block.Block;
 import org.bukkit.block.Chest;
@@ -14,7 +16,8 @@ import org.bukkit.event.Listener;
 import org.bukkit.event.block.BlockBreakEvent;
 import org.bukkit.event.inventory.InventoryCloseEvent;
 import org.bukkit.event.inventory.InventoryOpenEvent;
-import org.bukkit.event.player.PlayerInteractEvent;
+import org.bukkit.event.inventory.InventoryType;
+import org.bukkit.inventory.Inventory;
 import org.bukkit.inventory.InventoryHolder;
 
 
@@ -33,24 +36,24 @@ public class ChestListener implements Listener {
             return;
         }
 
+        if (!isTreasureChunk(event.getInventory())) {
+            return;
+        }
+
         Player player = (Player) event.getPlayer();
         InventoryHolder holder = event.getInventory().getHolder();
 
         if (holder instanceof Chest) {
             Chest chest = (Chest) holder;
             Block block = chest.getBlock();
-            TreasureChest treasureChest = plugin.getChestManager().getChestAt(block.getLocation());
+            TreasureChest treasureChest = getChestAt(block);
 
             if (treasureChest != null && !treasureChest.isLooted()) {
 
-                treasureChest.setLooted(true);
+                plugin.getChestManager().markLooted(treasureChest);
 
 
-                if (plugin.getConfigManager().isBroadcastSpawnEnabled()) {
-                    String message = plugin.getConfigManager().getMessage("chest-found")
-                            .replace("%player%", player.getName());
-                    Bukkit.broadcastMessage(message);
-                }
+                plugin.getNotificationManager().notifyChestFound(player, treasureChest);
 
 
                 plugin.getLogger().info(player.getName() + " found a treasure chest at " + 
@@ -69,12 +72,16 @@ public class ChestListener implements Listener {
             return;
         }
 
+        if (!isTreasureChunk(event.getInventory())) {
+            return;
+        }
+
         InventoryHolder holder = event.getInventory().getHolder();
 
         if (holder instanceof Chest) {
             Chest chest = (Chest) holder;
             Block block = chest.getBlock();
-            TreasureChest treasureChest = plugin.getChestManager().getChestAt(block.getLocation());
+            TreasureChest treasureChest = getChestAt(block);
 
             if (treasureChest != null && treasureChest.isLooted()) {
 
@@ -101,8 +108,9 @@ public class ChestListener implements Listener {
     public void onBlockBreak(BlockBreakEvent event) {
         Block block = event.getBlock();
 
-        if (block.getType() == Material.CHEST) {
-            TreasureChest treasureChest = plugin.getChestManager().getChestAt(block.getLocation());
+        if (plugin.getChestManager().isTreasureChunk(block.getWorld(), block.getX(), block.getZ())
+                && block.getType() == Material.CHEST) {
+            TreasureChest treasureChest = getChestAt(block);
 
             if (treasureChest != null) {
 
@@ -119,16 +127,25 @@ public class ChestListener implements Listener {
     }
 
 
-    @EventHandler(priority = EventPriority.HIGH, ignoreCancelled = true)
-    public void onPlayerInteract(PlayerInteractEvent event) {
-        Block block = event.getClickedBlock();
+    private boolean isTreasureChunk(Inventory inventory) {
+        if (inventory.getType() != InventoryType.CHEST) {
+            return false;
+        }
 
-        if (block != null && block.getType() == Material.CHEST) {
-            TreasureChest treasureChest = plugin.getChestManager().getChestAt(block.getLocation());
+        Location location = inventory.getLocation();
+        if (location != null && plugin.getChestManager().isTreasureChunk(location)) {
+            return true;
+        }
 
-            if (treasureChest != null) {
+        plugin.getMetricsManager().increment(MetricsManager.Counter.LISTENER_SKIPS);
+        return false;
+    }
 
-            }
-        }
+
+    private TreasureChest getChestAt(Block block) {
+        long start = System.nanoTime();
+        TreasureChest treasureChest = plugin.getChestManager().getChestAt(block.getLocation());
+        plugin.getMetricsManager().record(MetricsManager.Timer.LISTENER_LOOKUP, start);
+        return treasureChest;
     }
 }
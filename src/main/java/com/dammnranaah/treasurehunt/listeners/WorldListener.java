@@ -0,0 +1,45 @@
+package com.dammnranaah.treasurehunt.listeners;
+
+import com.dammnranaah.treasurehunt.TreasureHunt;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+import org.bukkit.event.world.ChunkLoadEvent;
+import org.bukkit.event.world.ChunkUnloadEvent;
+import org.bukkit.event.world.WorldLoadEvent;
+import org.bukkit.event.world.WorldUnloadEvent;
+
+
+public class WorldListener implements Listener {
+
+    private final TreasureHunt plugin;
+
+    public WorldListener(TreasureHunt plugin) {
+        this.plugin = plugin;
+    }
+
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onWorldLoad(WorldLoadEvent event) {
+        plugin.getChestManager().bindWorld(event.getWorld());
+    }
+
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onChunkLoad(ChunkLoadEvent event) {
+        plugin.getChestManager().getBlockOperations().onChunkLoad(event.getChunk());
+    }
+
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onChunkUnload(ChunkUnloadEvent event) {
+        plugin.getChestManager().getColumnHeightCache().invalidateChunk(event.getWorld(),
+                event.getChunk().getX(), event.getChunk().getZ());
+    }
+
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onWorldUnload(WorldUnloadEvent event) {
+        plugin.getChestManager().unbindWorld(event.getWorld());
+    }
+}
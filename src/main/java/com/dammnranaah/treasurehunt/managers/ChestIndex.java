@@ -0,0 +1,103 @@
+package com.dammnranaah.treasurehunt.managers;
+
+import com.dammnranaah.treasurehunt.models.TreasureChest;
+import com.dammnranaah.treasurehunt.utils.LocationUtils;
+import com.dammnranaah.treasurehunt.utils.LongObjectMap;
+import com.dammnranaah.treasurehunt.utils.SpatialGrid;
+import org.bukkit.Location;
+
+import java.util.List;
+
+/**
+ * Lookup structures for the treasure chests of a single world.
+ */
+public class ChestIndex {
+
+    private static final int GRID_CELL_SIZE = 64;
+
+    private final LongObjectMap<TreasureChest> chestsByBlock;
+    private final LongObjectMap<int[]> chestsPerChunk;
+    private final SpatialGrid<TreasureChest> grid;
+
+    public ChestIndex() {
+        this.chestsByBlock = new LongObjectMap<>();
+        this.chestsPerChunk = new LongObjectMap<>();
+        this.grid = new SpatialGrid<>(GRID_CELL_SIZE);
+    }
+
+    /**
+     * Indexes the chest unless its block already holds one.
+     *
+     * @return whether the chest was added
+     */
+    public boolean add(TreasureChest chest) {
+        Location location = chest.getLocation();
+        long key = LocationUtils.blockKey(location);
+        if (chestsByBlock.get(key) != null) {
+            return false;
+        }
+
+        chestsByBlock.put(key, chest);
+        long chunkKey = LocationUtils.chunkKey(location.getBlockX() >> 4, location.getBlockZ() >> 4);
+        int[] count = chestsPerChunk.get(chunkKey);
+        if (count == null) {
+            chestsPerChunk.put(chunkKey, new int[] {1});
+        } else {
+            count[0]++;
+        }
+        grid.add(location.getBlockX(), location.getBlockY(), location.getBlockZ(), chest);
+        return true;
+    }
+
+    public void remove(TreasureChest chest) {
+        long key = LocationUtils.blockKey(chest.getLocation());
+        if (chestsByBlock.get(key) == chest) {
+            chestsByBlock.remove(key);
+            removeFromGrid(chest);
+
+            Location location = chest.getLocation();
+            long chunkKey = LocationUtils.chunkKey(location.getBlockX() >> 4, location.getBlockZ() >> 4);
+            int[] count = chestsPerChunk.get(chunkKey);
+            if (count != null && --count[0] == 0) {
+                chestsPerChunk.remove(chunkKey);
+            }
+        }
+    }
+
+    /**
+     * Cheap pre-check for event handlers: false means there is certainly no
+     * treasure chest in the chunk.
+     */
+    public boolean hasChestInChunk(int chunkX, int chunkZ) {
+        return chestsPerChunk.containsKey(LocationUtils.chunkKey(chunkX, chunkZ));
+    }
+
+    public TreasureChest getAt(int x, int y, int z) {
+        return chestsByBlock.get(LocationUtils.blockKey(x, y, z));
+    }
+
+    public TreasureChest getAt(Location location) {
+        return getAt(location.getBlockX(), location.getBlockY(), location.getBlockZ());
+    }
+
+    public TreasureChest nearest(Location location) {
+        return grid.nearest(location.getBlockX(), location.getBlockY(), location.getBlockZ());
+    }
+
+    public List<TreasureChest> nearest(Location location, int count) {
+        return grid.nearest(location.getBlockX(), location.getBlockY(), location.getBlockZ(), count);
+    }
+
+    public List<TreasureChest> within(Location location, double radius) {
+        return grid.within(location.getBlockX(), location.getBlockY(), location.getBlockZ(), radius);
+    }
+
+    public boolean isEmpty() {
+        return chestsByBlock.isEmpty();
+    }
+
+    private void removeFromGrid(TreasureChest chest) {
+        Location location = chest.getLocation();
+        grid.remove(location.getBlockX(), location.getBlockY(), location.getBlockZ(), chest);
+    }
+}
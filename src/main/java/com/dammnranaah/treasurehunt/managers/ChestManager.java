@@ -1,327 +1,798 @@
 package com.dammnranaah.treasurehunt.managers;
 
 import com.dammnranaah.treasurehunt.TreasureHunt;
+import com.dammnranaah.treasurehunt.config.ConfigManager;
+import com.dammnranaah.treasurehunt.models.ChestRecord;
 import com.dammnranaah.treasurehunt.models.TreasureChest;
+import com.dammnranaah.treasurehunt.storage.BinaryChestStorage;
+import com.dammnranaah.treasurehunt.storage.ChestChangeLog;
+import com.dammnranaah.treasurehunt.storage.ChestJournal;
+import com.dammnranaah.treasurehunt.storage.ChestSnapshot;
+import com.dammnranaah.treasurehunt.storage.ChestStorage;
+import com.dammnranaah.treasurehunt.storage.JdbcChestStorage;
+import com.dammnranaah.treasurehunt.storage.SnapshotWriter;
+import com.dammnranaah.treasurehunt.storage.YamlChestStorage;
+import com.dammnranaah.treasurehunt.tasks.BlockMutationPipeline;
+import com.dammnranaah.treasurehunt.tasks.ChestSpawnJob;
+import com.dammnranaah.treasurehunt.utils.AliasSampler;
 import com.dammnranaah.treasurehunt.utils.LocationUtils;
+import com.dammnranaah.treasurehunt.utils.TimingWheel;
 import org.bukkit.Bukkit;
 import org.bukkit.Location;
 import org.bukkit.Material;
 import org.bukkit.World;
 import org.bukkit.block.Block;
 import org.bukkit.block.Chest;
-import org.bukkit.configuration.file.FileConfiguration;
-import org.bukkit.configuration.file.YamlConfiguration;
 import org.bukkit.entity.Player;
 
 import java.io.File;
 import java.io.IOException;
+import java.sql.SQLException;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.logging.Level;
 import java.util.stream.Collectors;
 
+/**
+ * Owns the chest registry. All mutation happens on the main thread; other
+ * threads read {@link #getActiveChestCount()} or {@link #getSnapshot()}, which
+ * is only rebuilt on the tick after a reader finds it out of date.
+ */
 public class ChestManager {
 
     private final TreasureHunt plugin;
     private final Map<UUID, TreasureChest> activeChests;
-    private final File chestsFile;
-    private FileConfiguration chestsConfig;
+    private final Map<UUID, ChestIndex> worldIndexes;
+    private final PendingChestTable pendingChests;
+    private final SpawnLocationFinder locationFinder;
+    private final SpawnCandidatePool candidatePool;
+    private final TimingWheel<UUID> despawnWheel;
+    private final DeferredBlockOperations blockOperations;
+    private final ChestStorage storage;
+    private final ChestJournal journal;
+    private final ChestChangeLog changeLog;
+    private final SnapshotWriter snapshotWriter;
+    private volatile AliasSampler<String> tierSampler;
+    private volatile ChestRegistrySnapshot snapshot;
+    private volatile long version;
+    private final AtomicBoolean publishScheduled = new AtomicBoolean();
 
     public ChestManager(TreasureHunt plugin) {
         this.plugin = plugin;
-        this.activeChests = new HashMap<>();
-        this.chestsFile = new File(plugin.getDataFolder(), "chests.yml");
+        this.activeChests = new ConcurrentHashMap<>();
+        this.worldIndexes = new HashMap<>();
+        this.pendingChests = new PendingChestTable();
+        this.locationFinder = new SpawnLocationFinder(plugin);
+        this.candidatePool = new SpawnCandidatePool(plugin, locationFinder);
+        this.tierSampler = compileTierSampler();
+        this.despawnWheel = new TimingWheel<>(1000L, 512, System.currentTimeMillis());
+        this.blockOperations = new DeferredBlockOperations(plugin);
+        this.blockOperations.load();
+        this.locationFinder.getHeatmap().load();
+        this.storage = createStorage(plugin.getConfigManager().getStorageType());
+        this.journal = !(storage instanceof ChestChangeLog) && plugin.getConfigManager().isJournalEnabled()
+                ? createJournal()
+                : null;
+        this.changeLog = storage instanceof ChestChangeLog ? (ChestChangeLog) storage : journal;
+        this.snapshotWriter = new SnapshotWriter(storage);
         loadChests();
+        publishSnapshot();
     }
 
-    private void loadChests() {
-        if (!chestsFile.exists()) {
-            try {
-                chestsFile.getParentFile().mkdirs();
-                chestsFile.createNewFile();
-            } catch (IOException e) {
-                plugin.getLogger().log(Level.SEVERE, "Could not create chests.yml", e);
-            }
+    private ChestStorage createStorage(String type) {
+        ConfigManager config = plugin.getConfigManager();
+        switch (type) {
+            case "BINARY":
+                return new BinaryChestStorage(new File(plugin.getDataFolder(), "chests.dat"));
+            case "YAML":
+                return new YamlChestStorage(new File(plugin.getDataFolder(), "chests.yml"));
+            case "MYSQL":
+                return openJdbcStorage(JdbcChestStorage.mysql(config.getMysqlHost(), config.getMysqlPort(),
+                        config.getMysqlDatabase(), config.getMysqlUsername(), config.getMysqlPassword(),
+                        config.getStorageTablePrefix(), config.getStorageServerId(), config.getStoragePoolSize(),
+                        config.getStorageBatchSize(), plugin.getLogger()));
+            case "SQLITE":
+                return openJdbcStorage(JdbcChestStorage.sqlite(new File(plugin.getDataFolder(), config.getSqliteFile()),
+                        config.getStorageTablePrefix(), config.getStorageServerId(), config.getStorageBatchSize(),
+                        plugin.getLogger()));
+            default:
+                plugin.getLogger().warning("Unknown storage type " + type + ", using YAML");
+                return new YamlChestStorage(new File(plugin.getDataFolder(), "chests.yml"));
         }
+    }
 
-        chestsConfig = YamlConfiguration.loadConfiguration(chestsFile);
-        
-        if (chestsConfig.contains("chests")) {
-            for (String key : chestsConfig.getConfigurationSection("chests").getKeys(false)) {
-                UUID uuid = UUID.fromString(key);
-                String worldName = chestsConfig.getString("chests." + key + ".world");
-                double x = chestsConfig.getDouble("chests." + key + ".x");
-                double y = chestsConfig.getDouble("chests." + key + ".y");
-                double z = chestsConfig.getDouble("chests." + key + ".z");
-                String tier = chestsConfig.getString("chests." + key + ".tier");
-                long spawnTime = chestsConfig.getLong("chests." + key + ".spawn-time");
-                
-                World world = Bukkit.getWorld(worldName);
-                if (world != null) {
-                    Location location = new Location(world, x, y, z);
-                    TreasureChest chest = new TreasureChest(uuid, location, tier, spawnTime);
-                    activeChests.put(uuid, chest);
-                }
-            }
-            
-            plugin.getLogger().info("Loaded " + activeChests.size() + " treasure chests from storage");
+
+    private ChestStorage openJdbcStorage(JdbcChestStorage jdbcStorage) {
+        try {
+            jdbcStorage.open();
+            return jdbcStorage;
+        } catch (SQLException e) {
+            plugin.getLogger().log(Level.SEVERE, "Could not open " + jdbcStorage.getName() + ", using YAML instead", e);
+            jdbcStorage.close();
+            return new YamlChestStorage(new File(plugin.getDataFolder(), "chests.yml"));
         }
     }
 
-    public void saveChests() {
-        chestsConfig.set("chests", null);
+
+    private ChestJournal createJournal() {
+        return new ChestJournal(new File(plugin.getDataFolder(), "journal"), plugin.getLogger());
+    }
+
+
+    private void loadChests() {
+        ChestStorage source = findSnapshotSource();
+        ChestSnapshot snapshot = source != null ? readSnapshot(source) : ChestSnapshot.empty();
+        Map<UUID, ChestRecord> records = snapshot.getRecords();
+        boolean imported = source != null && source != storage;
         
-        for (Map.Entry<UUID, TreasureChest> entry : activeChests.entrySet()) {
-            UUID uuid = entry.getKey();
-            TreasureChest chest = entry.getValue();
-            
-            String path = "chests." + uuid.toString();
-            chestsConfig.set(path + ".world", chest.getLocation().getWorld().getName());
-            chestsConfig.set(path + ".x", chest.getLocation().getX());
-            chestsConfig.set(path + ".y", chest.getLocation().getY());
-            chestsConfig.set(path + ".z", chest.getLocation().getZ());
-            chestsConfig.set(path + ".tier", chest.getTier());
-            chestsConfig.set(path + ".spawn-time", chest.getSpawnTime());
+        // Changes journaled after the last file snapshot still belong to it when importing
+        ChestJournal replayJournal = journal != null ? journal : imported ? createJournal() : null;
+        if (replayJournal != null) {
+            replayJournal.replay(snapshot.getJournalSegment(), records);
         }
-        
-        try {
-            chestsConfig.save(chestsFile);
-            plugin.getLogger().info("Saved " + activeChests.size() + " treasure chests to storage");
-        } catch (IOException e) {
-            plugin.getLogger().log(Level.SEVERE, "Could not save chests.yml", e);
+        if (journal != null) {
+            journal.open(snapshot.getJournalSegment());
         }
-    }
-
-    public int spawnChests(int count) {
-        int maxChests = plugin.getConfigManager().getMaxChests();
-        int currentChests = activeChests.size();
-        int chestsToSpawn = Math.min(count, maxChests - currentChests);
         
-        if (chestsToSpawn <= 0) {
-            plugin.getLogger().info("Cannot spawn more chests, maximum limit reached");
-            return 0;
+        List<TreasureChest> loaded = new ArrayList<>();
+        for (ChestRecord record : records.values()) {
+            World world = Bukkit.getWorld(record.getWorldName());
+            if (world != null) {
+                loaded.add(record.toChest(world));
+            } else {
+                pendingChests.add(record);
+            }
         }
+        activateLoadedChests(loaded);
         
-        List<String> enabledWorldNames = plugin.getConfigManager().getEnabledWorlds();
-        List<World> enabledWorlds = enabledWorldNames.stream()
-                .map(Bukkit::getWorld)
-                .filter(Objects::nonNull)
-                .collect(Collectors.toList());
+        if (!records.isEmpty()) {
+            plugin.getLogger().info("Loaded " + activeChests.size() + " treasure chests from storage"
+                    + (pendingChests.isEmpty() ? "" : " (" + pendingChests.size() + " waiting for their world to load)"));
+        }
         
-        if (enabledWorlds.isEmpty()) {
-            plugin.getLogger().warning("No valid worlds found for chest spawning");
-            return 0;
+        if (imported) {
+            plugin.getLogger().info("Imported " + records.size() + " treasure chests from "
+                    + source.getName() + " into " + storage.getName());
+            writeSnapshot();
+        }
+    }
+
+
+    /**
+     * The configured storage, or if it has never been written, the other
+     * format's file. This is how existing chests are migrated after changing
+     * storage.type.
+     */
+    private ChestStorage findSnapshotSource() {
+        if (storage.exists()) {
+            return storage;
         }
         
-        int spawned = 0;
-        for (int i = 0; i < chestsToSpawn; i++) {
-            World world = enabledWorlds.get(ThreadLocalRandom.current().nextInt(enabledWorlds.size()));
-            Location location = findSuitableLocation(world);
-            
-            if (location != null) {
-                String tier = determineTier();
-                spawnChest(location, tier);
-                spawned++;
+        for (ChestStorage other : getMigrationSources()) {
+            if (other.exists()) {
+                return other;
             }
         }
-        
-        return spawned;
+        return null;
     }
 
-    private Location findSuitableLocation(World world) {
-        int minDistance = plugin.getConfigManager().getMinDistance();
-        int maxDistance = plugin.getConfigManager().getMaxDistance();
-        int minY = plugin.getConfigManager().getMinY();
-        int maxY = plugin.getConfigManager().getMaxY();
-        boolean requireSolidGround = plugin.getConfigManager().requireSolidGround();
-        
-        Location spawnPoint = world.getSpawnLocation();
-        
-        for (int attempt = 0; attempt < 50; attempt++) {
-            double angle = ThreadLocalRandom.current().nextDouble() * 2 * Math.PI;
-            double distance = minDistance + ThreadLocalRandom.current().nextDouble() * (maxDistance - minDistance);
-            
-            int x = (int) (spawnPoint.getX() + distance * Math.cos(angle));
-            int z = (int) (spawnPoint.getZ() + distance * Math.sin(angle));
-            
-            int y = findSuitableY(world, x, z, minY, maxY, requireSolidGround);
+
+    private ChestSnapshot readSnapshot(ChestStorage source) {
+        try {
+            return source.load();
+        } catch (IOException | RuntimeException e) {
+            File file = source.getFile();
+            if (file == null) {
+                plugin.getLogger().log(Level.SEVERE, "Could not load " + source.getName() + ", starting empty", e);
+                return ChestSnapshot.empty();
+            }
             
-            if (y != -1) {
-                Location location = new Location(world, x, y, z);
-                
-                if (isSuitableForChest(location)) {
-                    return location;
-                }
+            File backup = new File(file.getPath() + ".broken");
+            plugin.getLogger().log(Level.SEVERE, "Could not load " + source.getName()
+                    + ", moving it to " + backup.getName() + " and starting empty", e);
+            if (!file.renameTo(backup)) {
+                plugin.getLogger().severe("Could not move " + source.getName() + " aside");
             }
+            return ChestSnapshot.empty();
+        }
+    }
+
+
+    private List<ChestStorage> getMigrationSources() {
+        List<ChestStorage> sources = new ArrayList<>();
+        if (!(storage instanceof YamlChestStorage)) {
+            sources.add(new YamlChestStorage(new File(plugin.getDataFolder(), "chests.yml")));
+        }
+        if (!(storage instanceof BinaryChestStorage)) {
+            sources.add(new BinaryChestStorage(new File(plugin.getDataFolder(), "chests.dat")));
+        }
+        return sources;
+    }
+
+
+    private ChestSnapshot createSnapshot(long journalSegment) {
+        List<ChestRecord> records = new ArrayList<>(activeChests.size() + pendingChests.size());
+        for (TreasureChest chest : activeChests.values()) {
+            records.add(ChestRecord.of(chest));
+        }
+        pendingChests.forEach(records::add);
+        return ChestSnapshot.of(records, journalSegment);
+    }
+
+
+    private boolean activateChest(TreasureChest chest) {
+        if (!indexChest(chest)) {
+            plugin.getLogger().warning("Dropping treasure chest " + chest.getId() + " at "
+                    + LocationUtils.formatLocation(chest.getLocation()) + ", another chest is registered there");
+            if (changeLog != null) {
+                changeLog.appendRemove(chest.getId());
+            }
+            return false;
         }
         
-        plugin.getLogger().warning("Could not find a suitable location for chest in world: " + world.getName());
-        return null;
+        markChanged();
+        activeChests.put(chest.getId(), chest);
+        scheduleDespawn(chest);
+        return true;
     }
 
-    private int findSuitableY(World world, int x, int z, int minY, int maxY, boolean requireSolidGround) {
-        if (requireSolidGround) {
 
-            for (int y = maxY; y >= minY; y--) {
-                Block block = world.getBlockAt(x, y, z);
-                Block blockAbove = world.getBlockAt(x, y + 1, z);
-                
-                if (block.getType().isSolid() && blockAbove.getType().isAir()) {
-                    return y + 1;
-                }
+    /**
+     * Activates chests read from storage. Chests whose despawn time passed
+     * while the server or their world was offline are removed right away,
+     * with one log line instead of a despawn broadcast each.
+     */
+    private void activateLoadedChests(List<TreasureChest> chests) {
+        long now = System.currentTimeMillis();
+        long despawnMillis = plugin.getConfigManager().getDespawnTime() * 60L * 1000L;
+        boolean despawnEnabled = plugin.getConfigManager().isDespawnEnabled();
+        int expired = 0;
+        
+        for (TreasureChest chest : chests) {
+            if (!activateChest(chest)) {
+                continue;
+            }
+            if (despawnEnabled && chest.getSpawnTime() + despawnMillis <= now) {
+                removeChest(chest.getId());
+                expired++;
             }
-        } else {
-            return minY + ThreadLocalRandom.current().nextInt(maxY - minY + 1);
         }
         
-        return -1;
+        if (expired > 0) {
+            plugin.getLogger().info("Removed " + expired + " treasure chests that expired while they were offline");
+        }
     }
-    private boolean isSuitableForChest(Location location) {
-        Block block = location.getBlock();
+
+
+    /**
+     * Brings back the chests saved for a world that has just loaded.
+     */
+    public void bindWorld(World world) {
+        requireMainThread();
+        List<ChestRecord> records = pendingChests.removeWorld(world.getName());
+        List<TreasureChest> chests = new ArrayList<>(records.size());
+        for (ChestRecord record : records) {
+            chests.add(record.toChest(world));
+        }
+        activateLoadedChests(chests);
         
-        if (!block.getType().isAir()) {
-            return false;
+        if (!records.isEmpty()) {
+            plugin.getLogger().info("Loaded " + records.size() + " treasure chests in " + world.getName());
+        }
+    }
+
+
+    /**
+     * Parks the chests of a world that is unloading as pending records, so
+     * they stop being indexed and ticked but are still saved.
+     */
+    public void unbindWorld(World world) {
+        requireMainThread();
+        candidatePool.removeWorld(world);
+        locationFinder.getHeightCache().removeWorld(world);
+        ChestIndex index = worldIndexes.remove(world.getUID());
+        if (index == null) {
+            return;
         }
         
-        for (int x = -1; x <= 1; x++) {
-            for (int z = -1; z <= 1; z++) {
-                Block nearbyBlock = location.clone().add(x, 0, z).getBlock();
-                if (nearbyBlock.getType() == Material.CHEST) {
-                    return false; 
-                }
+        Iterator<TreasureChest> iterator = activeChests.values().iterator();
+        while (iterator.hasNext()) {
+            TreasureChest chest = iterator.next();
+            if (world.equals(chest.getLocation().getWorld())) {
+                pendingChests.add(ChestRecord.of(chest));
+                despawnWheel.cancel(chest.getId());
+                iterator.remove();
             }
         }
-        
-        return true;
+        markChanged();
     }
 
-    private String determineTier() {
-        Map<String, Integer> tierChances = new HashMap<>();
-        tierChances.put("common", 60);
-        tierChances.put("uncommon", 30);
-        tierChances.put("rare", 8);
-        tierChances.put("epic", 2);
+
+    /**
+     * Persists all chests and waits for the write. Database storage is kept
+     * current change by change, so it only gets a full snapshot after a
+     * change failed to write; file storage always does.
+     */
+    public void saveChests() {
+        if (needsSnapshot()) {
+            writeSnapshot();
+        }
+        blockOperations.save();
+        locationFinder.getHeatmap().save();
+    }
+
+
+    /**
+     * Takes a snapshot on the calling (main) thread and writes it in the
+     * background. Requests made while a write is pending are merged into it.
+     * Does nothing for database storage unless changes failed to write.
+     */
+    public CompletableFuture<Boolean> saveChestsAsync() {
+        if (!needsSnapshot()) {
+            return CompletableFuture.completedFuture(true);
+        }
+        return writeSnapshotAsync();
+    }
+
+
+    private boolean needsSnapshot() {
+        return !(storage instanceof JdbcChestStorage) || ((JdbcChestStorage) storage).isOutOfSync();
+    }
+
+
+    private CompletableFuture<Boolean> writeSnapshotAsync() {
+        MetricsManager metrics = plugin.getMetricsManager();
+        long start = System.nanoTime();
+        ChestSnapshot snapshot = createSnapshot(journal != null ? journal.roll() : 0L);
+        metrics.record(MetricsManager.Timer.SAVE_SNAPSHOT, start);
         
-        if (plugin.getConfig().contains("loot.tiers")) {
-            for (String tier : plugin.getConfig().getConfigurationSection("loot.tiers").getKeys(false)) {
-                int chance = plugin.getConfig().getInt("loot.tiers." + tier + ".chance", 0);
-                if (chance > 0) {
-                    tierChances.put(tier, chance);
+        if (storage instanceof JdbcChestStorage) {
+            return ((JdbcChestStorage) storage).resync(snapshot).thenApply(written -> {
+                metrics.record(MetricsManager.Timer.SAVE, start);
+                if (!written) {
+                    metrics.increment(MetricsManager.Counter.SAVE_FAILURES);
                 }
+                return written;
+            });
+        }
+        
+        return snapshotWriter.save(snapshot)
+                .handle((written, error) -> {
+                    metrics.record(MetricsManager.Timer.SAVE, start);
+                    if (error != null) {
+                        metrics.increment(MetricsManager.Counter.SAVE_FAILURES);
+                        plugin.getLogger().log(Level.SEVERE, "Could not save " + storage.getName(), error);
+                        return false;
+                    }
+                    
+                    if (journal != null) {
+                        journal.deleteThrough(written.getJournalSegment());
+                    }
+                    return true;
+                });
+    }
+
+
+    /**
+     * Writes a full snapshot to the configured storage, database storage
+     * included (this is how chests imported from files reach a new table).
+     * With the journal enabled this is also its compaction: the snapshot
+     * records the segment it covers, and the segments up to it are dropped
+     * once the snapshot is saved.
+     */
+    private void writeSnapshot() {
+        try {
+            if (writeSnapshotAsync().get()) {
+                plugin.getLogger().info("Saved " + (activeChests.size() + pendingChests.size())
+                        + " treasure chests to " + storage.getName());
             }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            plugin.getLogger().log(Level.SEVERE, "Could not save " + storage.getName(), e.getCause());
+        }
+    }
+
+
+    /**
+     * Writes the current chests to a YAML file regardless of storage.type.
+     */
+    public int exportChests(File file) throws IOException {
+        ChestSnapshot snapshot = createSnapshot(0L);
+        new YamlChestStorage(file).save(snapshot);
+        return snapshot.getRecords().size();
+    }
+
+
+    public void compactJournalIfNeeded() {
+        if (journal != null && journal.getPendingRecords() >= plugin.getConfigManager().getJournalCompactThreshold()) {
+            saveChestsAsync();
+        }
+    }
+
+
+    public void closeStorage() {
+        snapshotWriter.close();
+        locationFinder.getHeatmap().close();
+        if (journal != null) {
+            journal.close();
         }
+        storage.close();
+    }
+
+
+    public CompletableFuture<List<UUID>> spawnChestsAsync(int count) {
+        int chestsToSpawn = getSpawnCapacity(count);
+        List<World> enabledWorlds = chestsToSpawn > 0 ? getSpawnWorlds() : Collections.emptyList();
         
-        int totalChance = tierChances.values().stream().mapToInt(Integer::intValue).sum();
+        if (enabledWorlds.isEmpty()) {
+            return CompletableFuture.completedFuture(new ArrayList<>());
+        }
         
-        int random = ThreadLocalRandom.current().nextInt(totalChance);
+        return new ChestSpawnJob(plugin, enabledWorlds, chestsToSpawn).start();
+    }
+
+
+    /**
+     * Picks a world to spawn in, favouring worlds where location searches
+     * tend to succeed.
+     */
+    public World pickSpawnWorld(List<World> worlds) {
+        return locationFinder.getSearchStats().pickWorld(worlds, ThreadLocalRandom.current());
+    }
+
+
+    public SpawnSearchStats getSpawnSearchStats() {
+        return locationFinder.getSearchStats();
+    }
+
+
+    public SpawnHeatmap getSpawnHeatmap() {
+        return locationFinder.getHeatmap();
+    }
+
+
+    public ColumnHeightCache getColumnHeightCache() {
+        return locationFinder.getHeightCache();
+    }
+
+
+    /**
+     * Re-checks a location found earlier, just before a chest is placed
+     * there: other chests may have been placed next to it since.
+     */
+    public boolean canPlaceChest(Location location) {
+        return locationFinder.canPlaceChest(location);
+    }
+
+
+    public Location findSpawnLocation(World world) {
+        Location candidate = candidatePool.poll(world);
+        return candidate != null ? candidate : locationFinder.findSuitableLocation(world);
+    }
+
+
+    public CompletableFuture<Location> findSpawnLocationAsync(World world) {
+        Location candidate = candidatePool.poll(world);
+        return candidate != null
+                ? CompletableFuture.completedFuture(candidate)
+                : locationFinder.findSuitableLocationAsync(world);
+    }
+
+
+    public boolean canSpawnMore() {
+        return activeChests.size() < plugin.getConfigManager().getMaxChests();
+    }
+
+
+    private int getSpawnCapacity(int count) {
+        int maxChests = plugin.getConfigManager().getMaxChests();
+        int chestsToSpawn = Math.min(count, maxChests - activeChests.size());
         
-        int currentSum = 0;
-        for (Map.Entry<String, Integer> entry : tierChances.entrySet()) {
-            currentSum += entry.getValue();
-            if (random < currentSum) {
-                return entry.getKey();
-            }
+        if (chestsToSpawn <= 0) {
+            plugin.getLogger().info("Cannot spawn more chests, maximum limit reached");
         }
+        return chestsToSpawn;
+    }
+
+
+    private List<World> getSpawnWorlds() {
+        List<World> enabledWorlds = plugin.getConfigManager().getEnabledWorlds().stream()
+                .map(Bukkit::getWorld)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toList());
         
+        if (enabledWorlds.isEmpty()) {
+            plugin.getLogger().warning("No valid worlds found for chest spawning");
+        }
+        return enabledWorlds;
+    }
+
 
-        return "common";
+    public void reloadTiers() {
+        tierSampler = compileTierSampler();
     }
 
 
+    private AliasSampler<String> compileTierSampler() {
+        return AliasSampler.of(plugin.getConfigManager().getSnapshot().getTierChances());
+    }
+
+
+    private String determineTier() {
+        return tierSampler.sample(ThreadLocalRandom.current());
+    }
+
+
+    public UUID spawnChest(Location location) {
+        return spawnChest(location, determineTier());
+    }
+
+
+    /**
+     * Places and registers a chest.
+     *
+     * @return the chest's id, or null if a treasure chest is already registered at the location
+     */
     public UUID spawnChest(Location location, String tier) {
-        Block block = location.getBlock();
-        block.setType(Material.CHEST);
-        
+        requireMainThread();
+        long start = System.nanoTime();
         UUID chestId = UUID.randomUUID();
         TreasureChest treasureChest = new TreasureChest(chestId, location, tier, System.currentTimeMillis());
+        if (!indexChest(treasureChest)) {
+            return null;
+        }
+        
+        Block block = location.getBlock();
+        block.setType(Material.CHEST);
         activeChests.put(chestId, treasureChest);
+        markChanged();
         
+        if (changeLog != null) {
+            changeLog.appendSpawn(ChestRecord.of(treasureChest));
+        }
 
         Chest chest = (Chest) block.getState();
         plugin.getLootManager().fillChest(chest.getInventory(), tier);
         
 
-        if (plugin.getConfigManager().isDespawnEnabled()) {
-            int despawnTime = plugin.getConfigManager().getDespawnTime();
-            Bukkit.getScheduler().runTaskLater(plugin, () -> {
-                if (activeChests.containsKey(chestId)) {
-                    removeChest(chestId);
-                    plugin.getLogger().info("Treasure chest despawned due to timeout");
-                    
-
-                    if (plugin.getConfigManager().isBroadcastSpawnEnabled()) {
-                        Bukkit.broadcastMessage(plugin.getConfigManager().getMessage("chest-despawn"));
-                    }
-                }
-            }, despawnTime * 20L * 60L);
-        }
+        scheduleDespawn(treasureChest);
+        plugin.getMetricsManager().increment(MetricsManager.Counter.CHESTS_SPAWNED);
+        plugin.getMetricsManager().record(MetricsManager.Timer.SPAWN_CHEST, start);
         
         plugin.getLogger().info("Spawned a " + tier + " treasure chest at " + LocationUtils.formatLocation(location));
         return chestId;
     }
 
 
+    private void scheduleDespawn(TreasureChest chest) {
+        if (plugin.getConfigManager().isDespawnEnabled()) {
+            long despawnMillis = plugin.getConfigManager().getDespawnTime() * 60L * 1000L;
+            despawnWheel.schedule(chest.getId(), chest.getSpawnTime() + despawnMillis);
+        }
+    }
+
+
+    public void rescheduleDespawns() {
+        despawnWheel.clear();
+        for (TreasureChest chest : activeChests.values()) {
+            scheduleDespawn(chest);
+        }
+    }
+
+
+    public void tickDespawns() {
+        despawnWheel.advance(System.currentTimeMillis(), this::despawnChest);
+    }
+
+
+    private void despawnChest(UUID chestId) {
+        if (activeChests.containsKey(chestId)) {
+            removeChest(chestId);
+            plugin.getLogger().info("Treasure chest despawned due to timeout");
+            
+
+            if (plugin.getConfigManager().isBroadcastSpawnEnabled()) {
+                Bukkit.broadcastMessage(plugin.getConfigManager().getMessage("chest-despawn"));
+            }
+        }
+    }
+
+
     public void removeChest(UUID chestId) {
+        requireMainThread();
         TreasureChest chest = activeChests.get(chestId);
         if (chest != null) {
             Location location = chest.getLocation();
-            Block block = location.getBlock();
-            
-            if (block.getType() == Material.CHEST) {
-                block.setType(Material.AIR);
-            }
+            blockOperations.setBlock(location.getWorld(), location.getBlockX(), location.getBlockY(),
+                    location.getBlockZ(), Material.AIR, Material.CHEST);
             
             activeChests.remove(chestId);
+            unindexChest(chest);
+            markChanged();
+            despawnWheel.cancel(chestId);
+            
+            if (changeLog != null) {
+                changeLog.appendRemove(chestId);
+            }
         }
     }
 
 
-    public TreasureChest getChestAt(Location location) {
-        for (TreasureChest chest : activeChests.values()) {
-            if (LocationUtils.isSameBlock(chest.getLocation(), location)) {
-                return chest;
+    public void markLooted(TreasureChest chest) {
+        if (chest.isLooted()) {
+            return;
+        }
+        
+        requireMainThread();
+        chest.setLooted(true);
+        if (activeChests.containsKey(chest.getId())) {
+            plugin.getMetricsManager().increment(MetricsManager.Counter.CHESTS_LOOTED);
+            markChanged();
+            if (changeLog != null) {
+                changeLog.appendLooted(chest.getId());
             }
         }
-        return null;
     }
 
 
-    public TreasureChest getNearestChest(Player player) {
-        if (activeChests.isEmpty()) {
+    public TreasureChest getChestAt(Location location) {
+        ChestIndex index = getIndex(location);
+        return index != null ? index.getAt(location) : null;
+    }
+
+
+    /**
+     * Whether the block's chunk holds any treasure chest. Lets listeners skip
+     * ordinary chests with a single lookup.
+     */
+    public boolean isTreasureChunk(Location location) {
+        return location.getWorld() != null
+                && isTreasureChunk(location.getWorld(), location.getBlockX(), location.getBlockZ());
+    }
+
+
+    public boolean isTreasureChunk(World world, int blockX, int blockZ) {
+        ChestIndex index = worldIndexes.get(world.getUID());
+        return index != null && index.hasChestInChunk(blockX >> 4, blockZ >> 4);
+    }
+
+
+    private ChestIndex getIndex(Location location) {
+        if (location == null || location.getWorld() == null) {
             return null;
         }
-        
-        Location playerLocation = player.getLocation();
-        TreasureChest nearest = null;
-        double nearestDistance = Double.MAX_VALUE;
-        
-        for (TreasureChest chest : activeChests.values()) {
+        return worldIndexes.get(location.getWorld().getUID());
+    }
 
-            if (!chest.getLocation().getWorld().equals(playerLocation.getWorld())) {
-                continue;
+
+    private boolean indexChest(TreasureChest chest) {
+        return worldIndexes.computeIfAbsent(chest.getLocation().getWorld().getUID(), id -> new ChestIndex()).add(chest);
+    }
+
+
+    private void unindexChest(TreasureChest chest) {
+        UUID worldId = chest.getLocation().getWorld().getUID();
+        ChestIndex index = worldIndexes.get(worldId);
+        if (index != null) {
+            index.remove(chest);
+            if (index.isEmpty()) {
+                worldIndexes.remove(worldId);
             }
-            
-            double distance = chest.getLocation().distance(playerLocation);
-            if (distance < nearestDistance) {
-                nearestDistance = distance;
-                nearest = chest;
+        }
+    }
+
+
+    public TreasureChest getNearestChest(Player player) {
+        return getNearestChest(player.getLocation());
+    }
+
+
+    public TreasureChest getNearestChest(Location location) {
+        ChestIndex index = getIndex(location);
+        return index != null ? index.nearest(location) : null;
+    }
+
+
+    public List<TreasureChest> getNearestChests(Location location, int count) {
+        ChestIndex index = getIndex(location);
+        return index != null ? index.nearest(location, count) : Collections.emptyList();
+    }
+
+
+    public List<TreasureChest> getChestsWithin(Location location, double radius) {
+        ChestIndex index = getIndex(location);
+        return index != null ? index.within(location, radius) : Collections.emptyList();
+    }
+
+
+    public DeferredBlockOperations getBlockOperations() {
+        return blockOperations;
+    }
+
+
+    public SpawnCandidatePool getCandidatePool() {
+        return candidatePool;
+    }
+
+
+    /**
+     * Live, read-only view of the active chests for main-thread callers.
+     * Other threads should use {@link #getSnapshot()}.
+     */
+    public Map<UUID, TreasureChest> getActiveChests() {
+        return Collections.unmodifiableMap(activeChests);
+    }
+
+
+    /**
+     * Number of active chests, safe to read from any thread.
+     */
+    public int getActiveChestCount() {
+        return activeChests.size();
+    }
+
+
+    /**
+     * The most recently published registry snapshot. Lock-free; if the
+     * registry has changed since, this returns the old snapshot and a fresh
+     * one is published on the next tick.
+     */
+    public ChestRegistrySnapshot getSnapshot() {
+        ChestRegistrySnapshot current = snapshot;
+        if (current.getVersion() != version && publishScheduled.compareAndSet(false, true)) {
+            if (plugin.isEnabled()) {
+                Bukkit.getScheduler().runTask(plugin, this::publishSnapshot);
+            } else {
+                publishScheduled.set(false);
             }
         }
+        return current;
+    }
+
+
+    private void markChanged() {
+        version++;
+    }
+
+
+    private void publishSnapshot() {
+        publishScheduled.set(false);
+        if (snapshot != null && snapshot.getVersion() == version) {
+            return;
+        }
         
-        return nearest;
+        Map<UUID, ChestRecord> chests = new LinkedHashMap<>(activeChests.size() * 2);
+        for (TreasureChest chest : activeChests.values()) {
+            chests.put(chest.getId(), ChestRecord.of(chest));
+        }
+        snapshot = new ChestRegistrySnapshot(version, System.currentTimeMillis(), chests);
     }
 
 
-    public Map<UUID, TreasureChest> getActiveChests() {
-        return activeChests;
+    private static void requireMainThread() {
+        if (!Bukkit.isPrimaryThread()) {
+            throw new IllegalStateException("Treasure chests can only be changed on the main thread");
+        }
     }
 
 
-    public void removeAllChests() {
-        for (UUID chestId : new ArrayList<>(activeChests.keySet())) {
-            removeChest(chestId);
+    /**
+     * Removes every active chest in chunk order across as many ticks as the
+     * mutation budget needs. The returned pipeline is already running.
+     */
+    public BlockMutationPipeline removeAllChestsAsync() {
+        BlockMutationPipeline pipeline = new BlockMutationPipeline(plugin);
+        for (TreasureChest chest : activeChests.values()) {
+            UUID chestId = chest.getId();
+            pipeline.add(chest.getLocation(), () -> removeChest(chestId));
         }
         
-        plugin.getLogger().info("Removed all treasure chests");
+        pipeline.getFuture().thenAccept(removed -> plugin.getLogger().info("Removed all treasure chests"));
+        return pipeline.close().start();
     }
 }
@@ -0,0 +1,50 @@
+package com.dammnranaah.treasurehunt.managers;
+
+import com.dammnranaah.treasurehunt.models.ChestRecord;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Immutable view of the active chests as of one tick. Safe to keep and
+ * iterate from any thread; {@link #getVersion()} increases with every
+ * published change.
+ */
+public final class ChestRegistrySnapshot {
+
+    private final long version;
+    private final long createdAt;
+    private final Map<UUID, ChestRecord> chests;
+
+    ChestRegistrySnapshot(long version, long createdAt, Map<UUID, ChestRecord> chests) {
+        this.version = version;
+        this.createdAt = createdAt;
+        this.chests = Collections.unmodifiableMap(chests);
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    public long getCreatedAt() {
+        return createdAt;
+    }
+
+    public ChestRecord get(UUID chestId) {
+        return chests.get(chestId);
+    }
+
+    public Collection<ChestRecord> getChests() {
+        return chests.values();
+    }
+
+    public Map<UUID, ChestRecord> asMap() {
+        return chests;
+    }
+
+    public int size() {
+        return chests.size();
+    }
+}
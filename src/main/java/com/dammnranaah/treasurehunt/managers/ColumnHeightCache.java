@@ -0,0 +1,112 @@
+package com.dammnranaah.treasurehunt.managers;
+
+import com.dammnranaah.treasurehunt.utils.LocationUtils;
+import org.bukkit.World;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Remembers the spawn surface of columns the location search has already
+ * scanned: the y just above the highest solid block with air over it inside
+ * [min-y, max-y], or -1 if there is none. Columns are grouped per chunk, and
+ * each world keeps its most recently used chunks up to a fixed limit.
+ * Entries are dropped when a block in the column changes or the chunk
+ * unloads, and cleared if the y range changes. Main thread only.
+ */
+public class ColumnHeightCache {
+
+    public static final int MISSING = Integer.MIN_VALUE;
+
+    private static final short UNKNOWN = Short.MIN_VALUE;
+
+    private final int maxChunksPerWorld;
+    private final Map<UUID, LinkedHashMap<Long, short[]>> byWorld;
+    private int minY;
+    private int maxY;
+
+    public ColumnHeightCache(int maxChunksPerWorld) {
+        this.maxChunksPerWorld = maxChunksPerWorld;
+        this.byWorld = new HashMap<>();
+    }
+
+    /**
+     * The cached surface for the column, or {@link #MISSING}.
+     */
+    public int get(World world, int x, int z, int minY, int maxY) {
+        if (minY != this.minY || maxY != this.maxY) {
+            byWorld.clear();
+            this.minY = minY;
+            this.maxY = maxY;
+            return MISSING;
+        }
+
+        LinkedHashMap<Long, short[]> chunks = byWorld.get(world.getUID());
+        short[] columns = chunks != null ? chunks.get(LocationUtils.chunkKey(x >> 4, z >> 4)) : null;
+        if (columns == null) {
+            return MISSING;
+        }
+
+        short surface = columns[columnIndex(x, z)];
+        return surface == UNKNOWN ? MISSING : surface;
+    }
+
+    public void put(World world, int x, int z, int surface) {
+        if (maxChunksPerWorld <= 0) {
+            return;
+        }
+
+        LinkedHashMap<Long, short[]> chunks = byWorld.computeIfAbsent(world.getUID(), id -> newChunkMap());
+        long chunkKey = LocationUtils.chunkKey(x >> 4, z >> 4);
+        short[] columns = chunks.get(chunkKey);
+        if (columns == null) {
+            columns = new short[256];
+            Arrays.fill(columns, UNKNOWN);
+            chunks.put(chunkKey, columns);
+        }
+        columns[columnIndex(x, z)] = (short) surface;
+    }
+
+    public void invalidate(World world, int x, int z) {
+        LinkedHashMap<Long, short[]> chunks = byWorld.get(world.getUID());
+        if (chunks == null) {
+            return;
+        }
+
+        short[] columns = chunks.get(LocationUtils.chunkKey(x >> 4, z >> 4));
+        if (columns != null) {
+            columns[columnIndex(x, z)] = UNKNOWN;
+        }
+    }
+
+    public void invalidateChunk(World world, int chunkX, int chunkZ) {
+        LinkedHashMap<Long, short[]> chunks = byWorld.get(world.getUID());
+        if (chunks != null) {
+            chunks.remove(LocationUtils.chunkKey(chunkX, chunkZ));
+        }
+    }
+
+    public void removeWorld(World world) {
+        byWorld.remove(world.getUID());
+    }
+
+    public void clear() {
+        byWorld.clear();
+    }
+
+    private LinkedHashMap<Long, short[]> newChunkMap() {
+        return new LinkedHashMap<Long, short[]>(64, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, short[]> eldest) {
+                return size() > maxChunksPerWorld;
+            }
+        };
+    }
+
+    private static int columnIndex(int x, int z) {
+        return (z & 15) << 4 | (x & 15);
+    }
+}
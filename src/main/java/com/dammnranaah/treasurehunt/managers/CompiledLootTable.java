@@ -0,0 +1,197 @@
+package com.dammnranaah.treasurehunt.managers;
+
+import com.dammnranaah.treasurehunt.utils.AliasSampler;
+import org.bukkit.Material;
+import org.bukkit.enchantments.Enchantment;
+import org.bukkit.inventory.ItemStack;
+import org.bukkit.inventory.meta.EnchantmentStorageMeta;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Loot table for one tier, resolved from the config once at load time.
+ * Item selection uses an alias table, and every enchantment combination an
+ * item can roll is prebuilt as a prototype stack that is cloned on use.
+ */
+public class CompiledLootTable {
+
+    private static final int MAX_PROTOTYPES = 4096;
+
+    private final String tier;
+    private final int minItems;
+    private final int maxItems;
+    private final int size;
+    private final AliasSampler<LootItem> sampler;
+
+    public CompiledLootTable(String tier, int minItems, int maxItems, List<LootItem> items) {
+        this.tier = tier;
+        this.minItems = Math.max(0, Math.min(minItems, maxItems));
+        this.maxItems = Math.max(this.minItems, maxItems);
+        this.size = items.size();
+
+        Map<LootItem, Integer> weights = new LinkedHashMap<>();
+        for (LootItem item : items) {
+            item.compile();
+            weights.put(item, item.getChance());
+        }
+
+        this.sampler = weights.values().stream().anyMatch(chance -> chance > 0)
+                ? AliasSampler.of(weights)
+                : null;
+    }
+
+    public String getTier() {
+        return tier;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int rollItemCount(Random random) {
+        return minItems + random.nextInt(maxItems - minItems + 1);
+    }
+
+    public ItemStack rollItem(Random random) {
+        return sampler != null ? sampler.sample(random).createItemStack(random) : null;
+    }
+
+
+    public static class LootItem {
+        private final Material material;
+        private final int minAmount;
+        private final int maxAmount;
+        private final int chance;
+        private final List<EnchantmentInfo> enchantments;
+        private int[] strides;
+        private ItemStack[] prototypes;
+
+        public LootItem(Material material, int minAmount, int maxAmount, int chance) {
+            this.material = material;
+            this.minAmount = Math.min(minAmount, maxAmount);
+            this.maxAmount = Math.max(minAmount, maxAmount);
+            this.chance = chance;
+            this.enchantments = new ArrayList<>();
+        }
+
+        public void addEnchantment(Enchantment enchantment, int minLevel, int maxLevel, int chance) {
+            enchantments.add(new EnchantmentInfo(enchantment, minLevel, maxLevel, chance));
+        }
+
+        public int getChance() {
+            return chance;
+        }
+
+        public ItemStack createItemStack(Random random) {
+            int amount = minAmount + random.nextInt(maxAmount - minAmount + 1);
+            int[] levels = prototypes == null ? new int[enchantments.size()] : null;
+            int combination = 0;
+
+            if (material != Material.AIR) {
+                for (int i = 0; i < enchantments.size(); i++) {
+                    EnchantmentInfo enchInfo = enchantments.get(i);
+                    if (random.nextInt(100) < enchInfo.chance) {
+                        int digit = 1 + random.nextInt(enchInfo.maxLevel - enchInfo.minLevel + 1);
+                        if (levels != null) {
+                            levels[i] = digit;
+                        } else {
+                            combination += digit * strides[i];
+                        }
+                    }
+                }
+            }
+
+            ItemStack item = prototypes != null ? prototypes[combination].clone() : buildStack(levels);
+            item.setAmount(amount);
+            return item;
+        }
+
+        /**
+         * Numbers every enchantment combination in mixed radix, one digit per
+         * enchantment (0 = not applied, n = level minLevel + n - 1), and
+         * prebuilds a stack for each.
+         */
+        private void compile() {
+            int[] itemStrides = new int[enchantments.size()];
+            long combinations = 1;
+
+            for (int i = 0; i < enchantments.size() && combinations <= MAX_PROTOTYPES; i++) {
+                EnchantmentInfo enchInfo = enchantments.get(i);
+                itemStrides[i] = (int) combinations;
+                combinations *= enchInfo.maxLevel - enchInfo.minLevel + 2;
+            }
+
+            // Too many combinations to prebuild, so stacks are built per roll instead
+            if (combinations > MAX_PROTOTYPES) {
+                strides = null;
+                prototypes = null;
+                return;
+            }
+
+            strides = itemStrides;
+            prototypes = new ItemStack[(int) combinations];
+            int[] levels = new int[enchantments.size()];
+            for (int combination = 0; combination < prototypes.length; combination++) {
+                for (int i = 0; i < levels.length; i++) {
+                    EnchantmentInfo enchInfo = enchantments.get(i);
+                    levels[i] = (combination / strides[i]) % (enchInfo.maxLevel - enchInfo.minLevel + 2);
+                }
+                prototypes[combination] = buildStack(levels);
+            }
+        }
+
+        private ItemStack buildStack(int[] levels) {
+            ItemStack item = new ItemStack(material, 1);
+            if (material == Material.AIR || enchantments.isEmpty()) {
+                return item;
+            }
+
+            EnchantmentStorageMeta storageMeta = material == Material.ENCHANTED_BOOK
+                    ? (EnchantmentStorageMeta) item.getItemMeta()
+                    : null;
+
+            for (int i = 0; i < enchantments.size(); i++) {
+                EnchantmentInfo enchInfo = enchantments.get(i);
+                int digit = levels[i];
+                if (digit == 0) {
+                    continue;
+                }
+
+                int level = enchInfo.minLevel + digit - 1;
+                if (storageMeta != null) {
+                    storageMeta.addStoredEnchant(enchInfo.enchantment, level, true);
+                } else {
+                    item.addUnsafeEnchantment(enchInfo.enchantment, level);
+                }
+            }
+
+            if (storageMeta != null) {
+                item.setItemMeta(storageMeta);
+            }
+            return item;
+        }
+    }
+
+
+    private static class EnchantmentInfo {
+        private final Enchantment enchantment;
+        private final int minLevel;
+        private final int maxLevel;
+        private final int chance;
+
+        private EnchantmentInfo(Enchantment enchantment, int minLevel, int maxLevel, int chance) {
+            this.enchantment = enchantment;
+            this.minLevel = Math.min(minLevel, maxLevel);
+            this.maxLevel = Math.max(minLevel, maxLevel);
+            this.chance = chance;
+        }
+    }
+}
@@ -0,0 +1,215 @@
+package com.dammnranaah.treasurehunt.managers;
+
+import com.dammnranaah.treasurehunt.TreasureHunt;
+import com.dammnranaah.treasurehunt.utils.LocationUtils;
+import com.dammnranaah.treasurehunt.utils.LongObjectMap;
+import org.bukkit.Bukkit;
+import org.bukkit.Chunk;
+import org.bukkit.Material;
+import org.bukkit.World;
+import org.bukkit.block.Block;
+import org.bukkit.configuration.ConfigurationSection;
+import org.bukkit.configuration.file.YamlConfiguration;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Level;
+
+/**
+ * Block changes aimed at chunks that are not loaded. Instead of loading the
+ * chunk just to change one block, the change is queued under its world and
+ * chunk and applied the next time that chunk loads. A later change to the
+ * same block replaces an earlier one. The queue is saved to
+ * block-operations.yml so it survives restarts.
+ */
+public class DeferredBlockOperations {
+
+    private final TreasureHunt plugin;
+    private final File file;
+    private final Map<String, LongObjectMap<List<BlockOperation>>> byWorld;
+    private int size;
+    private boolean dirty;
+
+    public DeferredBlockOperations(TreasureHunt plugin) {
+        this.plugin = plugin;
+        this.file = new File(plugin.getDataFolder(), "block-operations.yml");
+        this.byWorld = new HashMap<>();
+    }
+
+    /**
+     * Sets the block to {@code type} if it is currently {@code expected} (or
+     * unconditionally when {@code expected} is null). Applied now if the
+     * chunk is loaded, otherwise when it next loads.
+     *
+     * @return whether the change was applied immediately
+     */
+    public boolean setBlock(World world, int x, int y, int z, Material type, Material expected) {
+        if (world.isChunkLoaded(x >> 4, z >> 4)) {
+            apply(world, new BlockOperation(x, y, z, type, expected));
+            return true;
+        }
+
+        enqueue(world.getName(), new BlockOperation(x, y, z, type, expected));
+        return false;
+    }
+
+    /**
+     * Applies the changes queued for a chunk that has just loaded. They run
+     * on the next tick rather than inside the load event.
+     */
+    public void onChunkLoad(Chunk chunk) {
+        LongObjectMap<List<BlockOperation>> chunks = byWorld.get(chunk.getWorld().getName());
+        if (chunks == null) {
+            return;
+        }
+
+        List<BlockOperation> operations = chunks.remove(LocationUtils.chunkKey(chunk.getX(), chunk.getZ()));
+        if (operations == null) {
+            return;
+        }
+
+        size -= operations.size();
+        dirty = true;
+        if (chunks.isEmpty()) {
+            byWorld.remove(chunk.getWorld().getName());
+        }
+
+        World world = chunk.getWorld();
+        Bukkit.getScheduler().runTask(plugin, () -> {
+            for (BlockOperation operation : operations) {
+                setBlock(world, operation.x, operation.y, operation.z, operation.type, operation.expected);
+            }
+        });
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public void load() {
+        if (!file.exists()) {
+            return;
+        }
+
+        YamlConfiguration config = YamlConfiguration.loadConfiguration(file);
+        ConfigurationSection worlds = config.getConfigurationSection("operations");
+        if (worlds == null) {
+            return;
+        }
+
+        for (String worldName : worlds.getKeys(false)) {
+            for (String line : worlds.getStringList(worldName)) {
+                BlockOperation operation = BlockOperation.parse(line);
+                if (operation != null) {
+                    enqueue(worldName, operation);
+                } else {
+                    plugin.getLogger().warning("Ignoring invalid block operation in " + file.getName() + ": " + line);
+                }
+            }
+        }
+
+        dirty = false;
+        if (size > 0) {
+            plugin.getLogger().info("Loaded " + size + " block changes waiting for their chunks to load");
+        }
+    }
+
+    public void save() {
+        if (!dirty) {
+            return;
+        }
+
+        YamlConfiguration config = new YamlConfiguration();
+        for (Map.Entry<String, LongObjectMap<List<BlockOperation>>> entry : byWorld.entrySet()) {
+            List<String> lines = new ArrayList<>();
+            entry.getValue().forEachValue(operations -> {
+                for (BlockOperation operation : operations) {
+                    lines.add(operation.toString());
+                }
+            });
+            config.set("operations." + entry.getKey(), lines);
+        }
+
+        try {
+            config.save(file);
+            dirty = false;
+        } catch (IOException e) {
+            plugin.getLogger().log(Level.SEVERE, "Could not save " + file.getName(), e);
+        }
+    }
+
+    private void enqueue(String worldName, BlockOperation operation) {
+        LongObjectMap<List<BlockOperation>> chunks = byWorld.computeIfAbsent(worldName, name -> new LongObjectMap<>());
+        long chunkKey = LocationUtils.chunkKey(operation.x >> 4, operation.z >> 4);
+        List<BlockOperation> operations = chunks.get(chunkKey);
+        if (operations == null) {
+            operations = new ArrayList<>(2);
+            chunks.put(chunkKey, operations);
+        }
+
+        for (int i = 0; i < operations.size(); i++) {
+            if (operations.get(i).isSameBlock(operation)) {
+                operations.set(i, operation);
+                dirty = true;
+                return;
+            }
+        }
+
+        operations.add(operation);
+        size++;
+        dirty = true;
+    }
+
+    private static void apply(World world, BlockOperation operation) {
+        Block block = world.getBlockAt(operation.x, operation.y, operation.z);
+        if (operation.expected == null || block.getType() == operation.expected) {
+            block.setType(operation.type);
+        }
+    }
+
+
+    private static final class BlockOperation {
+        private final int x;
+        private final int y;
+        private final int z;
+        private final Material type;
+        private final Material expected;
+
+        private BlockOperation(int x, int y, int z, Material type, Material expected) {
+            this.x = x;
+            this.y = y;
+            this.z = z;
+            this.type = type;
+            this.expected = expected;
+        }
+
+        private boolean isSameBlock(BlockOperation other) {
+            return x == other.x && y == other.y && z == other.z;
+        }
+
+        private static BlockOperation parse(String line) {
+            String[] parts = line.split(",");
+            if (parts.length != 4 && parts.length != 5) {
+                return null;
+            }
+
+            try {
+                Material type = Material.valueOf(parts[3].trim());
+                Material expected = parts.length == 5 ? Material.valueOf(parts[4].trim()) : null;
+                return new BlockOperation(Integer.parseInt(parts[0].trim()), Integer.parseInt(parts[1].trim()),
+                        Integer.parseInt(parts[2].trim()), type, expected);
+            } catch (IllegalArgumentException e) {
+                return null;
+            }
+        }
+
+        @Override
+        public String toString() {
+            return x + "," + y + "," + z + "," + type.name() + (expected != null ? "," + expected.name() : "");
+        }
+    }
+}
@@ -0,0 +1,200 @@
+package com.dammnranaah.treasurehunt.managers;
+
+import com.dammnranaah.treasurehunt.TreasureHunt;
+import com.dammnranaah.treasurehunt.utils.LatencyHistogram;
+
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counters and latency histograms for the plugin's hot paths. Metrics are a
+ * fixed set of enum constants backed by arrays, so recording is an array read
+ * plus an atomic update and is safe from any thread.
+ */
+public class MetricsManager {
+
+    private static final double[] QUANTILES = {0.5, 0.9, 0.99};
+    private static final double NANOS_PER_SECOND = 1_000_000_000.0;
+
+    public enum Timer {
+        SPAWN_TASK("spawn_task", "Main thread time of ChestSpawnTask.run"),
+        SPAWN_BATCH("spawn_batch", "Time from the start of a spawn batch until its chests are placed"),
+        LOCATION_SEARCH("location_search", "Time to find one chest spawn location"),
+        SPAWN_CHEST("spawn_chest", "Time to place, register and fill one chest"),
+        LOOT_FILL("loot_fill", "Time to fill one chest with loot"),
+        SAVE_SNAPSHOT("save_snapshot", "Main thread time to take a chest snapshot for saving"),
+        SAVE("save", "Time from a save request until the snapshot is on disk"),
+        LISTENER_LOOKUP("listener_lookup", "Time of a treasure chest lookup in an event listener");
+
+        private final String name;
+        private final String help;
+
+        Timer(String name, String help) {
+            this.name = name;
+            this.help = help;
+        }
+
+        public String getName() {
+            return name;
+        }
+    }
+
+    public enum Counter {
+        CHESTS_SPAWNED("chests_spawned", "Treasure chests spawned"),
+        CHESTS_LOOTED("chests_looted", "Treasure chests opened for the first time"),
+        LOCATION_ATTEMPTS("location_attempts", "Columns tried while searching for spawn locations"),
+        LOCATION_FAILURES("location_failures", "Spawn location searches that found nothing"),
+        LISTENER_SKIPS("listener_skips", "Chest events skipped because the chunk holds no treasure chest"),
+        SAVE_FAILURES("save_failures", "Chest saves that failed");
+
+        private final String name;
+        private final String help;
+
+        Counter(String name, String help) {
+            this.name = name;
+            this.help = help;
+        }
+
+        public String getName() {
+            return name;
+        }
+    }
+
+    private final TreasureHunt plugin;
+    private final LatencyHistogram[] timers;
+    private final LongAdder[] counters;
+
+    public MetricsManager(TreasureHunt plugin) {
+        this.plugin = plugin;
+        this.timers = new LatencyHistogram[Timer.values().length];
+        this.counters = new LongAdder[Counter.values().length];
+
+        for (int i = 0; i < timers.length; i++) {
+            timers[i] = new LatencyHistogram();
+        }
+        for (int i = 0; i < counters.length; i++) {
+            counters[i] = new LongAdder();
+        }
+    }
+
+    /**
+     * Records the time since {@code startNanos}, a {@link System#nanoTime()}
+     * reading taken when the timed work began.
+     */
+    public void record(Timer timer, long startNanos) {
+        timers[timer.ordinal()].record(System.nanoTime() - startNanos);
+    }
+
+    public void increment(Counter counter) {
+        counters[counter.ordinal()].increment();
+    }
+
+    public void add(Counter counter, long amount) {
+        counters[counter.ordinal()].add(amount);
+    }
+
+    public LatencyHistogram getHistogram(Timer timer) {
+        return timers[timer.ordinal()];
+    }
+
+    public long getCount(Counter counter) {
+        return counters[counter.ordinal()].sum();
+    }
+
+    public void reset() {
+        for (LatencyHistogram timer : timers) {
+            timer.reset();
+        }
+        for (LongAdder counter : counters) {
+            counter.reset();
+        }
+    }
+
+    /**
+     * All metrics in the Prometheus text exposition format. Timers are
+     * summaries in seconds with a separate max gauge.
+     */
+    public String toPrometheus() {
+        StringBuilder out = new StringBuilder(4096);
+
+        for (Counter counter : Counter.values()) {
+            String name = "treasurehunt_" + counter.name + "_total";
+            out.append("# HELP ").append(name).append(' ').append(counter.help).append('\n');
+            out.append("# TYPE ").append(name).append(" counter\n");
+            out.append(name).append(' ').append(getCount(counter)).append('\n');
+        }
+
+        for (Timer timer : Timer.values()) {
+            LatencyHistogram histogram = getHistogram(timer);
+            String name = "treasurehunt_" + timer.name + "_seconds";
+            out.append("# HELP ").append(name).append(' ').append(timer.help).append('\n');
+            out.append("# TYPE ").append(name).append(" summary\n");
+            for (double quantile : QUANTILES) {
+                out.append(name).append("{quantile=\"").append(quantile).append("\"} ")
+                        .append(seconds(histogram.getValueAtQuantile(quantile))).append('\n');
+            }
+            out.append(name).append("_sum ").append(seconds(histogram.getSum())).append('\n');
+            out.append(name).append("_count ").append(histogram.getCount()).append('\n');
+
+            out.append("# HELP ").append(name).append("_max Longest recorded ").append(timer.name.replace('_', ' '))
+                    .append('\n');
+            out.append("# TYPE ").append(name).append("_max gauge\n");
+            out.append(name).append("_max ").append(seconds(histogram.getMax())).append('\n');
+        }
+
+        appendSearchStats(out, plugin.getChestManager().getSpawnSearchStats());
+
+        out.append("# HELP treasurehunt_active_chests Treasure chests currently in loaded worlds\n");
+        out.append("# TYPE treasurehunt_active_chests gauge\n");
+        out.append("treasurehunt_active_chests ").append(plugin.getChestManager().getActiveChestCount()).append('\n');
+        return out.toString();
+    }
+
+    private static void appendSearchStats(StringBuilder out, SpawnSearchStats stats) {
+        Map<String, SpawnSearchStats.WorldStats> worlds = stats.getWorlds();
+
+        out.append("# HELP treasurehunt_location_searches_total Spawn location searches by world and result\n");
+        out.append("# TYPE treasurehunt_location_searches_total counter\n");
+        for (Map.Entry<String, SpawnSearchStats.WorldStats> entry : worlds.entrySet()) {
+            SpawnSearchStats.WorldStats world = entry.getValue();
+            String label = "world=\"" + escape(entry.getKey()) + "\"";
+            out.append("treasurehunt_location_searches_total{").append(label).append(",result=\"found\"} ")
+                    .append(world.getSuccesses()).append('\n');
+            out.append("treasurehunt_location_searches_total{").append(label).append(",result=\"failed\"} ")
+                    .append(world.getSearches() - world.getSuccesses()).append('\n');
+        }
+
+        out.append("# HELP treasurehunt_location_rejections_total Rejected spawn location attempts by world and reason\n");
+        out.append("# TYPE treasurehunt_location_rejections_total counter\n");
+        for (Map.Entry<String, SpawnSearchStats.WorldStats> entry : worlds.entrySet()) {
+            for (SpawnSearchStats.Rejection rejection : SpawnSearchStats.Rejection.values()) {
+                out.append("treasurehunt_location_rejections_total{world=\"").append(escape(entry.getKey()))
+                        .append("\",reason=\"").append(rejection.name().toLowerCase(Locale.ROOT)).append("\"} ")
+                        .append(entry.getValue().getRejections(rejection)).append('\n');
+            }
+        }
+
+        out.append("# HELP treasurehunt_location_attempt_budget Columns a spawn location search may try per world\n");
+        out.append("# TYPE treasurehunt_location_attempt_budget gauge\n");
+        for (Map.Entry<String, SpawnSearchStats.WorldStats> entry : worlds.entrySet()) {
+            out.append("treasurehunt_location_attempt_budget{world=\"").append(escape(entry.getKey())).append("\"} ")
+                    .append(entry.getValue().getAttemptBudget()).append('\n');
+        }
+
+        out.append("# HELP treasurehunt_world_spawn_weight Relative chance of each world being picked for a spawn\n");
+        out.append("# TYPE treasurehunt_world_spawn_weight gauge\n");
+        for (Map.Entry<String, SpawnSearchStats.WorldStats> entry : worlds.entrySet()) {
+            out.append("treasurehunt_world_spawn_weight{world=\"").append(escape(entry.getKey())).append("\"} ")
+                    .append(String.format(Locale.ROOT, "%.4f", entry.getValue().getWeight())).append('\n');
+        }
+    }
+
+    private static String escape(String label) {
+        return label.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+    }
+
+    private static String seconds(long nanos) {
+        return String.format(Locale.ROOT, "%.9f", nanos / NANOS_PER_SECOND);
+    }
+}
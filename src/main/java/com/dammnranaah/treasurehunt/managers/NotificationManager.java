@@ -1,31 +1,46 @@
 package com.dammnranaah.treasurehunt.managers;
 
 import com.dammnranaah.treasurehunt.TreasureHunt;
+import com.dammnranaah.treasurehunt.config.ConfigSnapshot;
 import com.dammnranaah.treasurehunt.models.TreasureChest;
 import com.dammnranaah.treasurehunt.utils.LocationUtils;
+import com.dammnranaah.treasurehunt.utils.MessageTemplate;
 import org.bukkit.Bukkit;
 import org.bukkit.ChatColor;
 import org.bukkit.entity.Player;
 import org.bukkit.scheduler.BukkitTask;
 
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 public class NotificationManager {
 
     private final TreasureHunt plugin;
     private final Map<Integer, BukkitTask> countdownTasks;
+    // Chest-found broadcasts waiting for the coalesce window to close, main thread only
+    private final List<String> pendingFinders;
+    private BukkitTask foundFlushTask;
 
     public NotificationManager(TreasureHunt plugin) {
         this.plugin = plugin;
         this.countdownTasks = new HashMap<>();
+        this.pendingFinders = new ArrayList<>();
     }
+
+    /**
+     * Broadcasts an already formatted message; messages from the config have
+     * their colours translated when it loads.
+     */
     public void broadcastMessage(String message) {
         if (message == null || message.isEmpty()) {
             return;
         }
         
-        Bukkit.broadcastMessage(ChatColor.translateAlternateColorCodes('&', message));
+        Bukkit.broadcastMessage(message);
     }
 
     public void notifyChestSpawn(TreasureChest chest, boolean showLocation) {
@@ -38,23 +53,55 @@ public class NotificationManager {
 
         if (showLocation && chest != null) {
             String areaName = LocationUtils.getAreaName(chest.getLocation());
-            String message = plugin.getConfigManager().getMessage("spawn-location-hint")
-                    .replace("%location%", areaName);
-            
-            broadcastMessage(message);
+            broadcastMessage(plugin.getConfigManager().getMessageTemplate("spawn-location-hint")
+                    .render("location", areaName));
         }
     }
 
 
+    /**
+     * Announces a found chest. Finds within the coalesce window are merged
+     * into one chest-found-multiple broadcast so a busy hunt doesn't flood
+     * chat.
+     */
     public void notifyChestFound(Player player, TreasureChest chest) {
-        if (!plugin.getConfigManager().isBroadcastSpawnEnabled()) {
+        ConfigSnapshot config = plugin.getConfigManager().getSnapshot();
+        if (!config.isBroadcastSpawnEnabled()) {
             return;
         }
-        
-        String message = plugin.getConfigManager().getMessage("chest-found")
-                .replace("%player%", player.getName());
-        
-        broadcastMessage(message);
+
+        int window = config.getFoundCoalesceTicks();
+        if (window <= 0 || config.getMessageTemplate("chest-found-multiple").isEmpty()) {
+            broadcastMessage(config.getMessageTemplate("chest-found").render("player", player.getName()));
+            return;
+        }
+
+        pendingFinders.add(player.getName());
+        if (foundFlushTask == null) {
+            foundFlushTask = Bukkit.getScheduler().runTaskLater(plugin, this::flushFoundMessages, window);
+        }
+    }
+
+
+    public void flushFoundMessages() {
+        if (foundFlushTask != null) {
+            foundFlushTask.cancel();
+            foundFlushTask = null;
+        }
+        if (pendingFinders.isEmpty()) {
+            return;
+        }
+
+        ConfigSnapshot config = plugin.getConfigManager().getSnapshot();
+        if (pendingFinders.size() == 1) {
+            broadcastMessage(config.getMessageTemplate("chest-found").render("player", pendingFinders.get(0)));
+        } else {
+            Set<String> players = new LinkedHashSet<>(pendingFinders);
+            MessageTemplate template = config.getMessageTemplate("chest-found-multiple");
+            broadcastMessage(template.render("count", String.valueOf(pendingFinders.size()),
+                    "players", String.join(", ", players)));
+        }
+        pendingFinders.clear();
     }
 
 
@@ -80,12 +127,9 @@ public class NotificationManager {
             if (countdown < delayMinutes) {
                 int timeUntilNotification = (delayMinutes - countdown) * 60 * 20;
                 
-                BukkitTask task = Bukkit.getScheduler().runTaskLater(plugin, () -> {
-                    String message = plugin.getConfigManager().getMessage("countdown")
-                            .replace("%time%", String.valueOf(countdown));
-                    
-                    broadcastMessage(message);
-                }, timeUntilNotification);
+                BukkitTask task = Bukkit.getScheduler().runTaskLater(plugin, () ->
+                        broadcastMessage(plugin.getConfigManager().getMessageTemplate("countdown")
+                                .render("time", String.valueOf(countdown))), timeUntilNotification);
                 
                 countdownTasks.put(countdown, task);
             }
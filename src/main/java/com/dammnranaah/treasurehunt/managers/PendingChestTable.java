@@ -0,0 +1,61 @@
+package com.dammnranaah.treasurehunt.managers;
+
+import com.dammnranaah.treasurehunt.models.ChestRecord;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.function.Consumer;
+
+/**
+ * Chests whose world is not loaded, kept as plain records grouped by world
+ * name until the world comes back. They are saved with the rest but are not
+ * indexed, scheduled for despawn or otherwise touched while they wait.
+ */
+public class PendingChestTable {
+
+    private final Map<String, Map<UUID, ChestRecord>> byWorld;
+    private int size;
+
+    public PendingChestTable() {
+        this.byWorld = new HashMap<>();
+    }
+
+    public void add(ChestRecord record) {
+        Map<UUID, ChestRecord> records = byWorld.computeIfAbsent(record.getWorldName(), name -> new LinkedHashMap<>());
+        if (records.put(record.getId(), record) == null) {
+            size++;
+        }
+    }
+
+    /**
+     * Removes and returns every record waiting for {@code worldName}.
+     */
+    public List<ChestRecord> removeWorld(String worldName) {
+        Map<UUID, ChestRecord> records = byWorld.remove(worldName);
+        if (records == null) {
+            return Collections.emptyList();
+        }
+
+        size -= records.size();
+        return new ArrayList<>(records.values());
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public void forEach(Consumer<ChestRecord> action) {
+        for (Map<UUID, ChestRecord> records : byWorld.values()) {
+            records.values().forEach(action);
+        }
+    }
+}
@@ -0,0 +1,110 @@
+package com.dammnranaah.treasurehunt.managers;
+
+import com.dammnranaah.treasurehunt.TreasureHunt;
+import org.bukkit.Bukkit;
+import org.bukkit.Location;
+import org.bukkit.World;
+
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Keeps a small, bounded set of already-validated spawn locations per enabled
+ * world so spawning can take one instead of searching. Candidates are found in
+ * the background by {@link SpawnLocationFinder#findSuitableLocationAsync},
+ * re-checked just before use and dropped when their chunk changes.
+ */
+public class SpawnCandidatePool {
+
+    private final TreasureHunt plugin;
+    private final SpawnLocationFinder locationFinder;
+    private final Map<UUID, ArrayDeque<Location>> candidates;
+    private final Set<UUID> refilling;
+
+    public SpawnCandidatePool(TreasureHunt plugin, SpawnLocationFinder locationFinder) {
+        this.plugin = plugin;
+        this.locationFinder = locationFinder;
+        this.candidates = new HashMap<>();
+        this.refilling = new HashSet<>();
+    }
+
+    public Location poll(World world) {
+        ArrayDeque<Location> pool = candidates.get(world.getUID());
+        if (pool == null) {
+            return null;
+        }
+
+        // Candidates whose chunk has unloaded go to the back rather than being loaded to re-check them
+        for (int remaining = pool.size(); remaining > 0; remaining--) {
+            Location candidate = pool.pollFirst();
+            if (!world.isChunkLoaded(candidate.getBlockX() >> 4, candidate.getBlockZ() >> 4)) {
+                pool.addLast(candidate);
+                continue;
+            }
+
+            if (locationFinder.canPlaceChest(candidate)) {
+                return candidate;
+            }
+        }
+        return null;
+    }
+
+    public void refill() {
+        int targetSize = plugin.getConfigManager().getCandidatePoolSize();
+        Set<UUID> enabledWorlds = new HashSet<>();
+
+        for (String worldName : plugin.getConfigManager().getEnabledWorlds()) {
+            World world = Bukkit.getWorld(worldName);
+            if (world == null) {
+                continue;
+            }
+
+            UUID worldId = world.getUID();
+            enabledWorlds.add(worldId);
+            ArrayDeque<Location> pool = candidates.computeIfAbsent(worldId, id -> new ArrayDeque<>());
+            while (pool.size() > targetSize) {
+                pool.pollLast();
+            }
+
+            if (pool.size() < targetSize && refilling.add(worldId)) {
+                locationFinder.findSuitableLocationAsync(world, false).whenComplete((location, error) -> {
+                    refilling.remove(worldId);
+                    ArrayDeque<Location> current = candidates.get(worldId);
+                    if (location != null && current != null && current.size() < plugin.getConfigManager().getCandidatePoolSize()) {
+                        current.addLast(location);
+                    }
+                });
+            }
+        }
+
+        candidates.keySet().retainAll(enabledWorlds);
+    }
+
+    public void invalidateChunk(World world, int chunkX, int chunkZ) {
+        ArrayDeque<Location> pool = candidates.get(world.getUID());
+        if (pool == null || pool.isEmpty()) {
+            return;
+        }
+
+        Iterator<Location> iterator = pool.iterator();
+        while (iterator.hasNext()) {
+            Location candidate = iterator.next();
+            if (candidate.getBlockX() >> 4 == chunkX && candidate.getBlockZ() >> 4 == chunkZ) {
+                iterator.remove();
+            }
+        }
+    }
+
+    public void removeWorld(World world) {
+        candidates.remove(world.getUID());
+    }
+
+    public void clear() {
+        candidates.clear();
+    }
+}
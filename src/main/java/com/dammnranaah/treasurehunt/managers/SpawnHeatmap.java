@@ -0,0 +1,372 @@
+package com.dammnranaah.treasurehunt.managers;
+
+import com.dammnranaah.treasurehunt.TreasureHunt;
+import com.dammnranaah.treasurehunt.storage.AtomicFiles;
+import com.dammnranaah.treasurehunt.utils.LocationUtils;
+import com.dammnranaah.treasurehunt.utils.LongObjectMap;
+import org.bukkit.World;
+import org.bukkit.configuration.ConfigurationSection;
+import org.bukkit.configuration.file.YamlConfiguration;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+
+/**
+ * Learns which parts of each world's spawn ring can hold a chest, so the
+ * location search stops probing oceans and void. The ring is split into
+ * 128x128 block regions, each with a Beta posterior over the chance that a
+ * random column in it qualifies. Regions are drawn in proportion to their
+ * area times a posterior sample (Thompson sampling), mixed with a share of
+ * plain area-weighted draws for exploration, and the column inside a region
+ * is uniform. Good regions are all used, so chests still look random.
+ *
+ * <p>Only touched from the main thread. Counts are kept in heatmap.yml,
+ * which is written atomically on a background thread.</p>
+ */
+public class SpawnHeatmap {
+
+    private static final int REGION_SHIFT = 7;
+    private static final int REGION_SIZE = 1 << REGION_SHIFT;
+    private static final double EXPLORATION = 0.1;
+    // Counts are halved past this, so a region that changes is relearned
+    private static final int MAX_OBSERVATIONS = 256;
+    private static final int DRAWS_PER_TABLE = 256;
+    private static final int AREA_SAMPLES = 8;
+    private static final int MAX_COLUMN_TRIES = 16;
+
+    private final TreasureHunt plugin;
+    private final File file;
+    private final Map<String, LongObjectMap<Region>> byWorld;
+    private final Map<String, SamplingTable> tables;
+    private final ExecutorService writer;
+    private volatile boolean dirty;
+
+    public SpawnHeatmap(TreasureHunt plugin) {
+        this.plugin = plugin;
+        this.file = new File(plugin.getDataFolder(), "heatmap.yml");
+        this.byWorld = new HashMap<>();
+        this.tables = new HashMap<>();
+        this.writer = Executors.newSingleThreadExecutor(task -> {
+            Thread thread = new Thread(task, "TreasureHunt-Heatmap");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Picks a column {x, z} between {@code minDistance} and
+     * {@code maxDistance} blocks from the given centre.
+     */
+    public int[] sampleColumn(World world, double centerX, double centerZ, int minDistance, int maxDistance,
+                              Random random) {
+        SamplingTable table = tables.get(world.getName());
+        if (table == null || !table.matches(centerX, centerZ, minDistance, maxDistance) || table.drawsLeft <= 0) {
+            table = buildTable(world.getName(), centerX, centerZ, minDistance, maxDistance, random);
+            tables.put(world.getName(), table);
+        }
+
+        if (table.regionX.length == 0) {
+            return uniformColumn(centerX, centerZ, minDistance, maxDistance, random);
+        }
+
+        table.drawsLeft--;
+        int index = Arrays.binarySearch(table.cumulative, random.nextDouble() * table.cumulative[table.cumulative.length - 1]);
+        index = index < 0 ? Math.min(-index - 1, table.cumulative.length - 1) : index;
+
+        int baseX = table.regionX[index] << REGION_SHIFT;
+        int baseZ = table.regionZ[index] << REGION_SHIFT;
+        for (int tries = 0; tries < MAX_COLUMN_TRIES; tries++) {
+            int x = baseX + random.nextInt(REGION_SIZE);
+            int z = baseZ + random.nextInt(REGION_SIZE);
+            if (inRing(x + 0.5 - centerX, z + 0.5 - centerZ, minDistance, maxDistance)) {
+                return new int[] {x, z};
+            }
+        }
+        return uniformColumn(centerX, centerZ, minDistance, maxDistance, random);
+    }
+
+    public void record(World world, int x, int z, boolean suitable) {
+        LongObjectMap<Region> regions = byWorld.computeIfAbsent(world.getName(), name -> new LongObjectMap<>());
+        int regionX = x >> REGION_SHIFT;
+        int regionZ = z >> REGION_SHIFT;
+        long key = LocationUtils.chunkKey(regionX, regionZ);
+
+        Region region = regions.get(key);
+        if (region == null) {
+            region = new Region(regionX, regionZ);
+            regions.put(key, region);
+        }
+
+        if (suitable) {
+            region.hits++;
+        } else {
+            region.misses++;
+        }
+        if (region.hits + region.misses > MAX_OBSERVATIONS) {
+            region.hits /= 2;
+            region.misses /= 2;
+        }
+        dirty = true;
+    }
+
+    public void load() {
+        if (!file.exists()) {
+            return;
+        }
+
+        YamlConfiguration config = YamlConfiguration.loadConfiguration(file);
+        ConfigurationSection worlds = config.getConfigurationSection("regions");
+        if (config.getInt("region-size", REGION_SIZE) != REGION_SIZE || worlds == null) {
+            return;
+        }
+
+        for (String worldName : worlds.getKeys(false)) {
+            LongObjectMap<Region> regions = new LongObjectMap<>();
+            for (String line : worlds.getStringList(worldName)) {
+                Region region = Region.parse(line);
+                if (region != null) {
+                    regions.put(LocationUtils.chunkKey(region.x, region.z), region);
+                } else {
+                    plugin.getLogger().warning("Ignoring invalid region in " + file.getName() + ": " + line);
+                }
+            }
+            byWorld.put(worldName, regions);
+        }
+        dirty = false;
+    }
+
+    /**
+     * Saves the counts and waits for the write.
+     */
+    public void save() {
+        saveAsync().join();
+    }
+
+    /**
+     * Copies the counts on the calling (main) thread and writes them in the
+     * background, one write at a time.
+     */
+    public CompletableFuture<Void> saveAsync() {
+        if (!dirty) {
+            return CompletableFuture.completedFuture(null);
+        }
+
+        Map<String, List<String>> lines = new HashMap<>();
+        for (Map.Entry<String, LongObjectMap<Region>> entry : byWorld.entrySet()) {
+            List<String> worldLines = new ArrayList<>(entry.getValue().size());
+            entry.getValue().forEachValue(region -> worldLines.add(region.toString()));
+            lines.put(entry.getKey(), worldLines);
+        }
+        dirty = false;
+        return CompletableFuture.runAsync(() -> write(lines), writer);
+    }
+
+    /**
+     * Finishes queued writes and stops the writer thread.
+     */
+    public void close() {
+        writer.shutdown();
+        try {
+            writer.awaitTermination(10L, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void write(Map<String, List<String>> lines) {
+        YamlConfiguration config = new YamlConfiguration();
+        config.set("region-size", REGION_SIZE);
+        for (Map.Entry<String, List<String>> entry : lines.entrySet()) {
+            config.set("regions." + entry.getKey(), entry.getValue());
+        }
+
+        try {
+            AtomicFiles.write(file, ByteBuffer.wrap(config.saveToString().getBytes(StandardCharsets.UTF_8)));
+        } catch (IOException e) {
+            dirty = true;
+            plugin.getLogger().log(Level.SEVERE, "Could not save " + file.getName(), e);
+        }
+    }
+
+    /**
+     * Lists the regions overlapping the ring with one posterior sample each.
+     * Reused for a number of draws, since resampling every region per column
+     * would cost more than the probes it saves.
+     */
+    private SamplingTable buildTable(String worldName, double centerX, double centerZ, int minDistance,
+                                     int maxDistance, Random random) {
+        LongObjectMap<Region> regions = byWorld.get(worldName);
+        int minRegionX = (int) Math.floor(centerX - maxDistance) >> REGION_SHIFT;
+        int maxRegionX = (int) Math.floor(centerX + maxDistance) >> REGION_SHIFT;
+        int minRegionZ = (int) Math.floor(centerZ - maxDistance) >> REGION_SHIFT;
+        int maxRegionZ = (int) Math.floor(centerZ + maxDistance) >> REGION_SHIFT;
+
+        List<int[]> candidates = new ArrayList<>();
+        List<double[]> weights = new ArrayList<>();
+        double totalArea = 0;
+        double totalExploit = 0;
+
+        for (int regionX = minRegionX; regionX <= maxRegionX; regionX++) {
+            for (int regionZ = minRegionZ; regionZ <= maxRegionZ; regionZ++) {
+                double area = ringArea(regionX, regionZ, centerX, centerZ, minDistance, maxDistance);
+                if (area <= 0) {
+                    continue;
+                }
+
+                Region region = regions != null ? regions.get(LocationUtils.chunkKey(regionX, regionZ)) : null;
+                double successChance = region != null
+                        ? sampleBeta(region.hits + 1, region.misses + 1, random)
+                        : sampleBeta(1, 1, random);
+
+                candidates.add(new int[] {regionX, regionZ});
+                weights.add(new double[] {area, area * successChance});
+                totalArea += area;
+                totalExploit += area * successChance;
+            }
+        }
+
+        SamplingTable table = new SamplingTable(centerX, centerZ, minDistance, maxDistance, candidates.size());
+        double cumulative = 0;
+        for (int i = 0; i < candidates.size(); i++) {
+            double[] weight = weights.get(i);
+            double exploit = totalExploit > 0 ? weight[1] / totalExploit : 0;
+            cumulative += (1 - EXPLORATION) * exploit + EXPLORATION * weight[0] / totalArea;
+
+            table.regionX[i] = candidates.get(i)[0];
+            table.regionZ[i] = candidates.get(i)[1];
+            table.cumulative[i] = cumulative;
+        }
+        return table;
+    }
+
+    /**
+     * Share of the region inside the ring, estimated on a small grid of
+     * points.
+     */
+    private static double ringArea(int regionX, int regionZ, double centerX, double centerZ, int minDistance,
+                                   int maxDistance) {
+        double step = (double) REGION_SIZE / AREA_SAMPLES;
+        int inside = 0;
+        for (int i = 0; i < AREA_SAMPLES; i++) {
+            for (int j = 0; j < AREA_SAMPLES; j++) {
+                double dx = (regionX << REGION_SHIFT) + (i + 0.5) * step - centerX;
+                double dz = (regionZ << REGION_SHIFT) + (j + 0.5) * step - centerZ;
+                if (inRing(dx, dz, minDistance, maxDistance)) {
+                    inside++;
+                }
+            }
+        }
+        return (double) inside / (AREA_SAMPLES * AREA_SAMPLES);
+    }
+
+    private static boolean inRing(double dx, double dz, int minDistance, int maxDistance) {
+        double distanceSquared = dx * dx + dz * dz;
+        return distanceSquared >= (double) minDistance * minDistance
+                && distanceSquared <= (double) maxDistance * maxDistance;
+    }
+
+    private static int[] uniformColumn(double centerX, double centerZ, int minDistance, int maxDistance, Random random) {
+        double angle = random.nextDouble() * 2 * Math.PI;
+        double distance = minDistance + random.nextDouble() * (maxDistance - minDistance);
+        return new int[] {(int) (centerX + distance * Math.cos(angle)), (int) (centerZ + distance * Math.sin(angle))};
+    }
+
+    private static double sampleBeta(double alpha, double beta, Random random) {
+        double x = sampleGamma(alpha, random);
+        double y = sampleGamma(beta, random);
+        return x / (x + y);
+    }
+
+    /**
+     * Marsaglia and Tsang's method; shapes here are always at least 1.
+     */
+    private static double sampleGamma(double shape, Random random) {
+        double d = shape - 1.0 / 3.0;
+        double c = 1.0 / Math.sqrt(9.0 * d);
+        while (true) {
+            double x = random.nextGaussian();
+            double v = 1.0 + c * x;
+            if (v <= 0) {
+                continue;
+            }
+
+            v = v * v * v;
+            double u = random.nextDouble();
+            if (u < 1.0 - 0.0331 * x * x * x * x || Math.log(u) < 0.5 * x * x + d * (1.0 - v + Math.log(v))) {
+                return d * v;
+            }
+        }
+    }
+
+    private static final class SamplingTable {
+        private final double centerX;
+        private final double centerZ;
+        private final int minDistance;
+        private final int maxDistance;
+        private final int[] regionX;
+        private final int[] regionZ;
+        private final double[] cumulative;
+        private int drawsLeft = DRAWS_PER_TABLE;
+
+        private SamplingTable(double centerX, double centerZ, int minDistance, int maxDistance, int size) {
+            this.centerX = centerX;
+            this.centerZ = centerZ;
+            this.minDistance = minDistance;
+            this.maxDistance = maxDistance;
+            this.regionX = new int[size];
+            this.regionZ = new int[size];
+            this.cumulative = new double[size];
+        }
+
+        private boolean matches(double centerX, double centerZ, int minDistance, int maxDistance) {
+            return this.centerX == centerX && this.centerZ == centerZ
+                    && this.minDistance == minDistance && this.maxDistance == maxDistance;
+        }
+    }
+
+    private static final class Region {
+        private final int x;
+        private final int z;
+        private int hits;
+        private int misses;
+
+        private Region(int x, int z) {
+            this.x = x;
+            this.z = z;
+        }
+
+        private static Region parse(String line) {
+            String[] parts = line.split(",");
+            if (parts.length != 4) {
+                return null;
+            }
+
+            try {
+                Region region = new Region(Integer.parseInt(parts[0].trim()), Integer.parseInt(parts[1].trim()));
+                region.hits = Math.max(0, Integer.parseInt(parts[2].trim()));
+                region.misses = Math.max(0, Integer.parseInt(parts[3].trim()));
+                return region;
+            } catch (NumberFormatException e) {
+                return null;
+            }
+        }
+
+        @Override
+        public String toString() {
+            return x + "," + z + "," + hits + "," + misses;
+        }
+    }
+}
@@ -0,0 +1,421 @@
+package com.dammnranaah.treasurehunt.managers;
+
+import com.dammnranaah.treasurehunt.TreasureHunt;
+import com.dammnranaah.treasurehunt.config.ConfigSnapshot;
+import com.dammnranaah.treasurehunt.utils.LocationUtils;
+import org.bukkit.Bukkit;
+import org.bukkit.ChunkSnapshot;
+import org.bukkit.Location;
+import org.bukkit.Material;
+import org.bukkit.World;
+import org.bukkit.block.Block;
+import org.bukkit.block.BlockFace;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.logging.Level;
+
+public class SpawnLocationFinder {
+
+    private static final int MIN_ATTEMPTS = 8;
+    private static final int MAX_ATTEMPTS = 50;
+
+    private final TreasureHunt plugin;
+    private final SpawnSearchStats searchStats;
+    private final SpawnHeatmap heatmap;
+    private final ColumnHeightCache heightCache;
+
+    public SpawnLocationFinder(TreasureHunt plugin) {
+        this.plugin = plugin;
+        this.searchStats = new SpawnSearchStats(MIN_ATTEMPTS, MAX_ATTEMPTS);
+        this.heatmap = new SpawnHeatmap(plugin);
+        this.heightCache = new ColumnHeightCache(plugin.getConfigManager().getHeightCacheChunks());
+    }
+
+    public SpawnSearchStats getSearchStats() {
+        return searchStats;
+    }
+
+    public SpawnHeatmap getHeatmap() {
+        return heatmap;
+    }
+
+    public ColumnHeightCache getHeightCache() {
+        return heightCache;
+    }
+
+    public Location findSuitableLocation(World world) {
+        long start = System.nanoTime();
+        ConfigSnapshot config = plugin.getConfigManager().getSnapshot();
+        int minDistance = config.getMinDistance();
+        int maxDistance = config.getMaxDistance();
+        int minY = config.getMinY();
+        int maxY = config.getMaxY();
+        boolean requireSolidGround = config.requireSolidGround();
+
+        Location spawnPoint = world.getSpawnLocation();
+        int budget = searchStats.getAttemptBudget(world);
+        int[] rejections = new int[SpawnSearchStats.Rejection.values().length];
+
+        for (int attempt = 0; attempt < budget; attempt++) {
+            int[] column = heatmap.sampleColumn(world, spawnPoint.getX(), spawnPoint.getZ(), minDistance, maxDistance,
+                    ThreadLocalRandom.current());
+            int x = column[0];
+            int z = column[1];
+
+            int y = findSuitableY(world, x, z, minY, maxY, requireSolidGround);
+
+            if (y != -1) {
+                Location location = new Location(world, x, y, z);
+                SpawnSearchStats.Rejection rejection = checkChestSpot(location);
+                heatmap.record(world, x, z, rejection == null);
+
+                if (rejection == null) {
+                    recordSearch(world, start, attempt + 1, rejections, true);
+                    return location;
+                }
+                rejections[rejection.ordinal()]++;
+            } else {
+                heatmap.record(world, x, z, false);
+                rejections[SpawnSearchStats.Rejection.NO_GROUND.ordinal()]++;
+            }
+        }
+
+        recordSearch(world, start, budget, rejections, false);
+        logFailure(world, budget, rejections);
+        return null;
+    }
+
+    private void recordSearch(World world, long start, int attempts, int[] rejections, boolean found) {
+        MetricsManager metrics = plugin.getMetricsManager();
+        metrics.add(MetricsManager.Counter.LOCATION_ATTEMPTS, attempts);
+        if (!found) {
+            metrics.increment(MetricsManager.Counter.LOCATION_FAILURES);
+        }
+        metrics.record(MetricsManager.Timer.LOCATION_SEARCH, start);
+        searchStats.recordSearch(world, attempts, found, rejections);
+    }
+
+    private void logFailure(World world, int attempts, int[] rejections) {
+        String reasons = SpawnSearchStats.describe(rejections);
+        plugin.getLogger().warning("Could not find a suitable location for chest in world: " + world.getName()
+                + " after " + attempts + " attempts" + (reasons.isEmpty() ? "" : " (" + reasons + ")"));
+    }
+
+    /**
+     * Searches for a spawn location without scanning columns on the main thread.
+     * Each tick a small batch of candidate chunks is snapshotted, the snapshots
+     * are scanned on the scheduler's async pool, and the best hit is re-checked
+     * against the live world back on the main thread. The returned future is
+     * always completed on the main thread, with {@code null} if nothing was found.
+     */
+    public CompletableFuture<Location> findSuitableLocationAsync(World world) {
+        return findSuitableLocationAsync(world, true);
+    }
+
+
+    public CompletableFuture<Location> findSuitableLocationAsync(World world, boolean reportFailure) {
+        CompletableFuture<Location> future = new CompletableFuture<>();
+        new AsyncSearch(world, future, reportFailure).nextBatch();
+        return future;
+    }
+
+    private int findSuitableY(World world, int x, int z, int minY, int maxY, boolean requireSolidGround) {
+        if (!requireSolidGround) {
+            return minY + ThreadLocalRandom.current().nextInt(maxY - minY + 1);
+        }
+
+        // A cached surface is confirmed with two block reads, in case it changed without an event
+        int cached = heightCache.get(world, x, z, minY, maxY);
+        if (cached != ColumnHeightCache.MISSING
+                && (cached == -1 || isSurface(world.getBlockAt(x, cached - 1, z), world.getBlockAt(x, cached, z).getType()))) {
+            return cached;
+        }
+
+        int y = scanColumn(world, x, z, minY, maxY);
+        heightCache.put(world, x, z, y);
+        return y;
+    }
+
+    /**
+     * Scans down from the world's highest block, since nothing above it can
+     * be solid, carrying each block's type down as the next one's "above".
+     */
+    private static int scanColumn(World world, int x, int z, int minY, int maxY) {
+        int top = Math.min(maxY, world.getHighestBlockYAt(x, z));
+        if (top < minY) {
+            return -1;
+        }
+
+        Material above = world.getBlockAt(x, top + 1, z).getType();
+        for (int y = top; y >= minY; y--) {
+            Block block = world.getBlockAt(x, y, z);
+            if (isSurface(block, above)) {
+                return y + 1;
+            }
+            above = block.getType();
+        }
+
+        return -1;
+    }
+
+    private static boolean isSurface(Block block, Material above) {
+        return above.isAir() && block.getType().isSolid();
+    }
+
+    public boolean isSuitableForChest(Location location) {
+        return checkChestSpot(location) == null;
+    }
+
+    /**
+     * {@link #isSuitableForChest} plus the solid ground check when the config
+     * requires it.
+     */
+    public boolean canPlaceChest(Location location) {
+        return isSuitableForChest(location) && (!plugin.getConfigManager().requireSolidGround()
+                || location.getBlock().getRelative(BlockFace.DOWN).getType().isSolid());
+    }
+
+    /**
+     * Why a chest can't go at {@code location}, or {@code null} if it can.
+     */
+    private SpawnSearchStats.Rejection checkChestSpot(Location location) {
+        Block block = location.getBlock();
+
+        if (!block.getType().isAir()) {
+            return SpawnSearchStats.Rejection.OBSTRUCTED;
+        }
+
+        for (int x = -1; x <= 1; x++) {
+            for (int z = -1; z <= 1; z++) {
+                Block nearbyBlock = location.clone().add(x, 0, z).getBlock();
+                if (nearbyBlock.getType() == Material.CHEST) {
+                    return SpawnSearchStats.Rejection.ADJACENT_CHEST;
+                }
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * Scans one column of a chunk snapshot for a chest position on solid
+     * ground with no chest next to it. Safe to call off the main thread.
+     *
+     * @return the chest's y, or -1 if the column has no such position
+     */
+    public static int findSpawnY(ChunkSnapshot snapshot, int x, int z, int minY, int maxY) {
+        return findSpawnY(snapshot, x, z, minY, maxY, null);
+    }
+
+    private static int findSpawnY(ChunkSnapshot snapshot, int x, int z, int minY, int maxY, int[] rejections) {
+        int y = findSuitableY(snapshot, x, z, minY, maxY);
+        SpawnSearchStats.Rejection rejection = null;
+        if (y == -1) {
+            rejection = SpawnSearchStats.Rejection.NO_GROUND;
+        } else if (hasAdjacentChest(snapshot, x, y, z)) {
+            rejection = SpawnSearchStats.Rejection.ADJACENT_CHEST;
+        }
+
+        if (rejection == null) {
+            return y;
+        }
+        if (rejections != null) {
+            rejections[rejection.ordinal()]++;
+        }
+        return -1;
+    }
+
+    private static int findSuitableY(ChunkSnapshot snapshot, int x, int z, int minY, int maxY) {
+        int localX = x & 15;
+        int localZ = z & 15;
+        Material above = snapshot.getBlockType(localX, maxY + 1, localZ);
+
+        for (int y = maxY; y >= minY; y--) {
+            Material type = snapshot.getBlockType(localX, y, localZ);
+            if (type.isSolid() && above.isAir()) {
+                return y + 1;
+            }
+            above = type;
+        }
+
+        return -1;
+    }
+
+    private static boolean hasAdjacentChest(ChunkSnapshot snapshot, int x, int y, int z) {
+        for (int dx = -1; dx <= 1; dx++) {
+            for (int dz = -1; dz <= 1; dz++) {
+                int localX = (x & 15) + dx;
+                int localZ = (z & 15) + dz;
+
+                // Neighbours in other chunks are covered by the main-thread re-check
+                if (localX < 0 || localX > 15 || localZ < 0 || localZ > 15) {
+                    continue;
+                }
+                if (snapshot.getBlockType(localX, y, localZ) == Material.CHEST) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private final class AsyncSearch {
+
+        private final World world;
+        private final CompletableFuture<Location> future;
+        private final boolean reportFailure;
+        private final int minDistance;
+        private final int maxDistance;
+        private final int minY;
+        private final int maxY;
+        private final boolean requireSolidGround;
+        private final int columnsPerTick;
+        private final double spawnX;
+        private final double spawnZ;
+        private final long start;
+        private final int[] rejections;
+        private int attemptsLeft;
+        private int attempts;
+
+        private AsyncSearch(World world, CompletableFuture<Location> future, boolean reportFailure) {
+            ConfigSnapshot config = plugin.getConfigManager().getSnapshot();
+            Location spawnPoint = world.getSpawnLocation();
+
+            this.world = world;
+            this.future = future;
+            this.reportFailure = reportFailure;
+            this.minDistance = config.getMinDistance();
+            this.maxDistance = config.getMaxDistance();
+            this.minY = Math.max(config.getMinY(), world.getMinHeight());
+            this.maxY = Math.min(config.getMaxY(), world.getMaxHeight() - 2);
+            this.requireSolidGround = config.requireSolidGround();
+            this.columnsPerTick = config.getAsyncSearchColumnsPerTick();
+            this.spawnX = spawnPoint.getX();
+            this.spawnZ = spawnPoint.getZ();
+            this.start = System.nanoTime();
+            this.rejections = new int[SpawnSearchStats.Rejection.values().length];
+            this.attemptsLeft = searchStats.getAttemptBudget(world);
+        }
+
+        private void nextBatch() {
+            if (attemptsLeft <= 0 || maxY < minY) {
+                finish(null);
+                return;
+            }
+
+            int batchSize = Math.min(columnsPerTick, attemptsLeft);
+            attemptsLeft -= batchSize;
+
+            if (!requireSolidGround) {
+                for (int i = 0; i < batchSize; i++) {
+                    int[] column = randomColumn();
+                    int y = minY + ThreadLocalRandom.current().nextInt(maxY - minY + 1);
+                    Location location = new Location(world, column[0], y, column[1]);
+                    SpawnSearchStats.Rejection rejection = checkChestSpot(location);
+                    heatmap.record(world, column[0], column[1], rejection == null);
+                    attempts++;
+                    if (rejection == null) {
+                        finish(location);
+                        return;
+                    }
+                    rejections[rejection.ordinal()]++;
+                }
+                runNextTick(this::nextBatch);
+                return;
+            }
+
+            Map<Long, ChunkSnapshot> snapshots = new HashMap<>();
+            List<int[]> columns = new ArrayList<>(batchSize);
+            for (int i = 0; i < batchSize; i++) {
+                int[] column = randomColumn();
+                int chunkX = column[0] >> 4;
+                int chunkZ = column[1] >> 4;
+                long chunkKey = LocationUtils.chunkKey(chunkX, chunkZ);
+
+                if (!snapshots.containsKey(chunkKey)) {
+                    snapshots.put(chunkKey, world.getChunkAt(chunkX, chunkZ).getChunkSnapshot(false, false, false));
+                }
+                columns.add(column);
+            }
+
+            Bukkit.getScheduler().runTaskAsynchronously(plugin, () -> {
+                int[] found = null;
+                int[] batchRejections = new int[rejections.length];
+                int scanned = 0;
+                try {
+                    for (int[] column : columns) {
+                        long chunkKey = LocationUtils.chunkKey(column[0] >> 4, column[1] >> 4);
+                        int y = findSpawnY(snapshots.get(chunkKey), column[0], column[1], minY, maxY, batchRejections);
+                        scanned++;
+
+                        if (y != -1) {
+                            found = new int[] {column[0], y, column[1]};
+                            break;
+                        }
+                    }
+                } catch (RuntimeException e) {
+                    plugin.getLogger().log(Level.WARNING, "Failed to scan chunk snapshots for a chest location", e);
+                }
+
+                int[] candidate = found;
+                int batchAttempts = scanned;
+                runNextTick(() -> {
+                    attempts += batchAttempts;
+                    for (int i = 0; i < rejections.length; i++) {
+                        rejections[i] += batchRejections[i];
+                    }
+
+                    Location location = null;
+                    SpawnSearchStats.Rejection rejection = null;
+                    if (candidate != null) {
+                        location = new Location(world, candidate[0], candidate[1], candidate[2]);
+                        rejection = checkChestSpot(location);
+                        if (rejection == null && !location.getBlock().getRelative(BlockFace.DOWN).getType().isSolid()) {
+                            rejection = SpawnSearchStats.Rejection.NO_GROUND;
+                        }
+                    }
+
+                    // Only the last scanned column can be the hit
+                    for (int i = 0; i < batchAttempts; i++) {
+                        boolean hit = i == batchAttempts - 1 && location != null && rejection == null;
+                        heatmap.record(world, columns.get(i)[0], columns.get(i)[1], hit);
+                    }
+
+                    if (location != null) {
+                        if (rejection == null) {
+                            finish(location);
+                            return;
+                        }
+                        rejections[rejection.ordinal()]++;
+                    }
+                    nextBatch();
+                });
+            });
+        }
+
+        private void finish(Location location) {
+            recordSearch(world, start, attempts, rejections, location != null);
+            if (location == null && reportFailure) {
+                logFailure(world, attempts, rejections);
+            }
+            future.complete(location);
+        }
+
+        private int[] randomColumn() {
+            return heatmap.sampleColumn(world, spawnX, spawnZ, minDistance, maxDistance, ThreadLocalRandom.current());
+        }
+
+        private void runNextTick(Runnable action) {
+            if (!plugin.isEnabled()) {
+                future.complete(null);
+                return;
+            }
+            Bukkit.getScheduler().runTask(plugin, action);
+        }
+    }
+}
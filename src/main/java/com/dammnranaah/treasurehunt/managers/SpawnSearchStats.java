@@ -0,0 +1,188 @@
+package com.dammnranaah.treasurehunt.managers;
+
+import org.bukkit.World;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Per-world outcome of spawn location searches: how many columns were tried,
+ * why they were rejected and how often a search succeeded. A decayed
+ * per-attempt hit rate drives each world's attempt budget and its weight when
+ * picking a world to spawn in, so worlds where chests rarely fit (e.g. the
+ * void of the End) get short, infrequent searches.
+ */
+public class SpawnSearchStats {
+
+    public enum Rejection {
+        NO_GROUND("no solid ground"),
+        OBSTRUCTED("spot not empty"),
+        ADJACENT_CHEST("next to a chest");
+
+        private final String description;
+
+        Rejection(String description) {
+            this.description = description;
+        }
+
+        public String getDescription() {
+            return description;
+        }
+    }
+
+    // Searches should succeed this often within their budget
+    private static final double TARGET_SUCCESS = 0.95;
+    private static final double DECAY = 0.98;
+    private static final double MIN_WEIGHT = 0.05;
+
+    private final int minAttempts;
+    private final int maxAttempts;
+    private final Map<String, WorldStats> worlds;
+
+    public SpawnSearchStats(int minAttempts, int maxAttempts) {
+        this.minAttempts = minAttempts;
+        this.maxAttempts = maxAttempts;
+        this.worlds = new ConcurrentHashMap<>();
+    }
+
+    public void recordSearch(World world, int attempts, boolean found, int[] rejections) {
+        get(world.getName()).record(attempts, found, rejections);
+    }
+
+    /**
+     * Columns to try in the world before giving up: enough to succeed
+     * {@link #TARGET_SUCCESS} of the time at the world's hit rate, capped at
+     * the maximum, or only the minimum if even that would usually fail.
+     */
+    public int getAttemptBudget(World world) {
+        return get(world.getName()).getAttemptBudget();
+    }
+
+    /**
+     * Relative chance of the world being picked for a spawn: how likely a
+     * search there is to succeed within its budget, never below
+     * {@link #MIN_WEIGHT} so a world that improves is noticed again.
+     */
+    public double getWeight(World world) {
+        return get(world.getName()).getWeight();
+    }
+
+    public World pickWorld(List<World> candidates, Random random) {
+        if (candidates.size() == 1) {
+            return candidates.get(0);
+        }
+
+        double[] weights = new double[candidates.size()];
+        double total = 0;
+        for (int i = 0; i < weights.length; i++) {
+            weights[i] = getWeight(candidates.get(i));
+            total += weights[i];
+        }
+
+        double roll = random.nextDouble() * total;
+        for (int i = 0; i < weights.length; i++) {
+            roll -= weights[i];
+            if (roll < 0) {
+                return candidates.get(i);
+            }
+        }
+        return candidates.get(weights.length - 1);
+    }
+
+    /**
+     * Statistics for every world searched so far, by world name.
+     */
+    public Map<String, WorldStats> getWorlds() {
+        return Collections.unmodifiableMap(new TreeMap<>(worlds));
+    }
+
+    private WorldStats get(String worldName) {
+        return worlds.computeIfAbsent(worldName, name -> new WorldStats());
+    }
+
+    public static String describe(int[] rejections) {
+        StringBuilder description = new StringBuilder();
+        for (Rejection rejection : Rejection.values()) {
+            int count = rejections[rejection.ordinal()];
+            if (count > 0) {
+                if (description.length() > 0) {
+                    description.append(", ");
+                }
+                description.append(count).append(' ').append(rejection.getDescription());
+            }
+        }
+        return description.toString();
+    }
+
+    public final class WorldStats {
+        private long searches;
+        private long successes;
+        private long attempts;
+        private final long[] rejections = new long[Rejection.values().length];
+        private double recentAttempts;
+        private double recentHits;
+
+        private synchronized void record(int searchAttempts, boolean found, int[] searchRejections) {
+            searches++;
+            attempts += searchAttempts;
+            for (int i = 0; i < rejections.length; i++) {
+                rejections[i] += searchRejections[i];
+            }
+            if (found) {
+                successes++;
+            }
+
+            recentAttempts = recentAttempts * DECAY + searchAttempts;
+            recentHits = recentHits * DECAY + (found ? 1 : 0);
+        }
+
+        /**
+         * Estimated chance that a single column is usable, starting at one
+         * half for a world with no history.
+         */
+        public synchronized double getHitRate() {
+            return (recentHits + 1) / (recentAttempts + 2);
+        }
+
+        public synchronized int getAttemptBudget() {
+            double hitRate = getHitRate();
+            if (hitRate >= 1) {
+                return minAttempts;
+            }
+
+            double needed = Math.ceil(Math.log(1 - TARGET_SUCCESS) / Math.log(1 - hitRate));
+            if (needed <= maxAttempts) {
+                return Math.max(minAttempts, (int) needed);
+            }
+
+            // Short of the target even with every attempt: keep the full budget while most
+            // searches still succeed, otherwise only probe the world now and then
+            return 1 - Math.pow(1 - hitRate, maxAttempts) >= 0.5 ? maxAttempts : minAttempts;
+        }
+
+        public synchronized double getWeight() {
+            double successChance = 1 - Math.pow(1 - getHitRate(), getAttemptBudget());
+            return Math.max(MIN_WEIGHT, successChance);
+        }
+
+        public synchronized long getSearches() {
+            return searches;
+        }
+
+        public synchronized long getSuccesses() {
+            return successes;
+        }
+
+        public synchronized long getAttempts() {
+            return attempts;
+        }
+
+        public synchronized long getRejections(Rejection rejection) {
+            return rejections[rejection.ordinal()];
+        }
+    }
+}
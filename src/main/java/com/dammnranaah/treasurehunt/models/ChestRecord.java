@@ -0,0 +1,81 @@
+package com.dammnranaah.treasurehunt.models;
+
+import org.bukkit.Location;
+import org.bukkit.World;
+
+import java.util.UUID;
+
+/**
+ * Immutable, world-independent copy of a treasure chest's persistent state.
+ */
+public final class ChestRecord {
+
+    private final UUID id;
+    private final String worldName;
+    private final int x;
+    private final int y;
+    private final int z;
+    private final String tier;
+    private final long spawnTime;
+    private final boolean looted;
+
+    public ChestRecord(UUID id, String worldName, int x, int y, int z, String tier, long spawnTime, boolean looted) {
+        this.id = id;
+        this.worldName = worldName;
+        this.x = x;
+        this.y = y;
+        this.z = z;
+        this.tier = tier;
+        this.spawnTime = spawnTime;
+        this.looted = looted;
+    }
+
+    public static ChestRecord of(TreasureChest chest) {
+        Location location = chest.getLocation();
+        return new ChestRecord(chest.getId(), location.getWorld().getName(),
+                location.getBlockX(), location.getBlockY(), location.getBlockZ(),
+                chest.getTier(), chest.getSpawnTime(), chest.isLooted());
+    }
+
+    public TreasureChest toChest(World world) {
+        TreasureChest chest = new TreasureChest(id, new Location(world, x, y, z), tier, spawnTime);
+        chest.setLooted(looted);
+        return chest;
+    }
+
+    public ChestRecord withLooted(boolean looted) {
+        return looted == this.looted ? this : new ChestRecord(id, worldName, x, y, z, tier, spawnTime, looted);
+    }
+
+    public UUID getId() {
+        return id;
+    }
+
+    public String getWorldName() {
+        return worldName;
+    }
+
+    public int getX() {
+        return x;
+    }
+
+    public int getY() {
+        return y;
+    }
+
+    public int getZ() {
+        return z;
+    }
+
+    public String getTier() {
+        return tier;
+    }
+
+    public long getSpawnTime() {
+        return spawnTime;
+    }
+
+    public boolean isLooted() {
+        return looted;
+    }
+}
@@ -10,7 +10,7 @@ public class TreasureChest {
     private final Location location;
     private final String tier;
     private final long spawnTime;
-    private boolean looted;
+    private volatile boolean looted;
     public TreasureChest(UUID id, Location location, String tier, long spawnTime) {
         this.id = id;
         this.location = location;
@@ -0,0 +1,225 @@
+package com.dammnranaah.treasurehunt.storage;
+
+import com.dammnranaah.treasurehunt.models.ChestRecord;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.zip.CRC32;
+
+/**
+ * Compact chest snapshot, read in one pass into a heap buffer. The file is
+ * small and read once, and a memory mapping would outlive the channel until
+ * GC, which on Windows blocks the atomic rename of the next save over it.
+ *
+ * <p>Layout (big-endian): magic, version, journal segment, a world name table
+ * and a tier name table, the record count, fixed-width records and a CRC32 of
+ * everything before it. Each record is the chest UUID, spawn time, block
+ * coordinates, world and tier table indexes and a flags byte.</p>
+ */
+public class BinaryChestStorage implements ChestStorage {
+
+    private static final int MAGIC = 0x54484353;
+    private static final short VERSION = 1;
+    private static final int RECORD_SIZE = 44;
+    private static final byte FLAG_LOOTED = 1;
+
+    private final File file;
+
+    public BinaryChestStorage(File file) {
+        this.file = file;
+    }
+
+    @Override
+    public String getName() {
+        return file.getName();
+    }
+
+    @Override
+    public File getFile() {
+        return file;
+    }
+
+    @Override
+    public boolean exists() {
+        return file.isFile() && file.length() > 0;
+    }
+
+    @Override
+    public ChestSnapshot load() throws IOException {
+        ByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE) {
+                throw new IOException(file.getName() + " is too large");
+            }
+
+            buffer = ByteBuffer.allocate((int) size);
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer) < 0) {
+                    break;
+                }
+            }
+            buffer.flip();
+        }
+
+        try {
+            return read(buffer);
+        } catch (BufferUnderflowException | IndexOutOfBoundsException e) {
+            throw new IOException(file.getName() + " is truncated", e);
+        }
+    }
+
+    private ChestSnapshot read(ByteBuffer buffer) throws IOException {
+        if (buffer.remaining() < 4 + 2 + 2 + 8 + 4 || buffer.getInt() != MAGIC) {
+            throw new IOException(file.getName() + " is not a chest storage file");
+        }
+
+        short version = buffer.getShort();
+        if (version != VERSION) {
+            throw new IOException("Unsupported " + file.getName() + " version " + version);
+        }
+        buffer.getShort();
+
+        ByteBuffer checked = buffer.duplicate();
+        checked.position(0).limit(buffer.limit() - 4);
+        CRC32 crc = new CRC32();
+        crc.update(checked);
+        if ((int) crc.getValue() != buffer.getInt(buffer.limit() - 4)) {
+            throw new IOException("Checksum mismatch in " + file.getName());
+        }
+
+        long journalSegment = buffer.getLong();
+        String[] worlds = readStrings(buffer);
+        String[] tiers = readStrings(buffer);
+
+        int count = buffer.getInt();
+        if (count < 0 || (long) count * RECORD_SIZE > buffer.remaining() - 4) {
+            throw new IOException(file.getName() + " has an invalid record count");
+        }
+
+        Map<UUID, ChestRecord> records = new LinkedHashMap<>(count * 2);
+        for (int i = 0; i < count; i++) {
+            UUID id = new UUID(buffer.getLong(), buffer.getLong());
+            long spawnTime = buffer.getLong();
+            int x = buffer.getInt();
+            int y = buffer.getInt();
+            int z = buffer.getInt();
+            int world = buffer.getShort() & 0xFFFF;
+            int tier = buffer.getShort() & 0xFFFF;
+            byte flags = buffer.get();
+            buffer.position(buffer.position() + 3);
+
+            records.put(id, new ChestRecord(id, worlds[world], x, y, z, tiers[tier], spawnTime,
+                    (flags & FLAG_LOOTED) != 0));
+        }
+
+        return new ChestSnapshot(records, journalSegment);
+    }
+
+    @Override
+    public void save(ChestSnapshot snapshot) throws IOException {
+        Map<String, Integer> worlds = new LinkedHashMap<>();
+        Map<String, Integer> tiers = new LinkedHashMap<>();
+        for (ChestRecord record : snapshot.getRecords().values()) {
+            intern(worlds, record.getWorldName());
+            intern(tiers, record.getTier());
+        }
+
+        List<byte[]> worldNames = encode(worlds);
+        List<byte[]> tierNames = encode(tiers);
+        int count = snapshot.getRecords().size();
+        int size = 4 + 2 + 2 + 8 + tableSize(worldNames) + tableSize(tierNames) + 4 + count * RECORD_SIZE + 4;
+
+        ByteBuffer buffer = ByteBuffer.allocate(size);
+        buffer.putInt(MAGIC);
+        buffer.putShort(VERSION);
+        buffer.putShort((short) 0);
+        buffer.putLong(snapshot.getJournalSegment());
+        writeStrings(buffer, worldNames);
+        writeStrings(buffer, tierNames);
+
+        buffer.putInt(count);
+        for (ChestRecord record : snapshot.getRecords().values()) {
+            buffer.putLong(record.getId().getMostSignificantBits());
+            buffer.putLong(record.getId().getLeastSignificantBits());
+            buffer.putLong(record.getSpawnTime());
+            buffer.putInt(record.getX());
+            buffer.putInt(record.getY());
+            buffer.putInt(record.getZ());
+            buffer.putShort((short) (int) worlds.get(record.getWorldName()));
+            buffer.putShort((short) (int) tiers.get(record.getTier()));
+            buffer.put(record.isLooted() ? FLAG_LOOTED : 0);
+            buffer.put(new byte[3]);
+        }
+
+        CRC32 crc = new CRC32();
+        crc.update(buffer.array(), 0, buffer.position());
+        buffer.putInt((int) crc.getValue());
+        buffer.flip();
+
+        AtomicFiles.write(file, buffer);
+    }
+
+    private static void intern(Map<String, Integer> table, String value) throws IOException {
+        if (!table.containsKey(value)) {
+            if (table.size() >= 0x10000) {
+                throw new IOException("Too many distinct names for the string table");
+            }
+            table.put(value, table.size());
+        }
+    }
+
+    private static List<byte[]> encode(Map<String, Integer> table) {
+        List<byte[]> encoded = new ArrayList<>(table.size());
+        for (String value : table.keySet()) {
+            encoded.add(value.getBytes(StandardCharsets.UTF_8));
+        }
+        return encoded;
+    }
+
+    private static int tableSize(List<byte[]> strings) {
+        int size = 4;
+        for (byte[] string : strings) {
+            size += 4 + string.length;
+        }
+        return size;
+    }
+
+    private static void writeStrings(ByteBuffer buffer, List<byte[]> strings) {
+        buffer.putInt(strings.size());
+        for (byte[] string : strings) {
+            buffer.putInt(string.length);
+            buffer.put(string);
+        }
+    }
+
+    private String[] readStrings(ByteBuffer buffer) throws IOException {
+        int count = buffer.getInt();
+        if (count < 0 || count > 0x10000) {
+            throw new IOException(file.getName() + " has an invalid string table");
+        }
+
+        String[] strings = new String[count];
+        for (int i = 0; i < count; i++) {
+            int length = buffer.getInt();
+            if (length < 0 || length > buffer.remaining()) {
+                throw new IOException(file.getName() + " has an invalid string table");
+            }
+
+            byte[] bytes = new byte[length];
+            buffer.get(bytes);
+            strings[i] = new String(bytes, StandardCharsets.UTF_8);
+        }
+        return strings;
+    }
+}
@@ -0,0 +1,18 @@
+package com.dammnranaah.treasurehunt.storage;
+
+import com.dammnranaah.treasurehunt.models.ChestRecord;
+
+import java.util.UUID;
+
+/**
+ * Receives every chest change as it happens, on the main thread.
+ * Implementations must not block.
+ */
+public interface ChestChangeLog {
+
+    void appendSpawn(ChestRecord record);
+
+    void appendLooted(UUID chestId);
+
+    void appendRemove(UUID chestId);
+}
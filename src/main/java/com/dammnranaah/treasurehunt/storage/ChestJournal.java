@@ -0,0 +1,397 @@
+package com.dammnranaah.treasurehunt.storage;
+
+import com.dammnranaah.treasurehunt.models.ChestRecord;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only write-ahead log of chest spawns, loots and removals.
+ *
+ * <p>Records are handed to a background writer that drains everything queued
+ * since its last write and syncs once per batch (group commit). The log is
+ * split into numbered segments: a snapshot remembers the last segment it
+ * covers, startup replays only the segments after it, and once a newer
+ * snapshot is safely on disk the segments it covers are deleted.</p>
+ */
+public class ChestJournal implements ChestChangeLog {
+
+    private static final Pattern SEGMENT_NAME = Pattern.compile("segment-(\\d+)\\.log");
+    private static final int MAX_RECORD_SIZE = 64 * 1024;
+
+    private static final byte SPAWN = 1;
+    private static final byte LOOT = 2;
+    private static final byte REMOVE = 3;
+
+    private static final Object ROLL = new Object();
+    private static final Object STOP = new Object();
+
+    private final File directory;
+    private final Logger logger;
+    private final BlockingQueue<Object> queue;
+    private Thread writer;
+    private long activeSegment;
+    private int pendingRecords;
+
+    public ChestJournal(File directory, Logger logger) {
+        this.directory = directory;
+        this.logger = logger;
+        this.queue = new LinkedBlockingQueue<>();
+    }
+
+    /**
+     * Applies every segment after {@code snapshotSegment}, oldest first, on top
+     * of the snapshot's records. A torn or corrupt record ends the replay of
+     * its segment.
+     */
+    public void replay(long snapshotSegment, Map<UUID, ChestRecord> records) {
+        int replayed = 0;
+
+        for (Map.Entry<Long, File> segment : listSegments().entrySet()) {
+            if (segment.getKey() <= snapshotSegment) {
+                continue;
+            }
+
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(segment.getValue())))) {
+                while (true) {
+                    byte[] payload = readRecord(in, segment.getValue());
+                    if (payload == null) {
+                        break;
+                    }
+                    apply(payload, records);
+                    replayed++;
+                }
+            } catch (IOException e) {
+                logger.log(Level.SEVERE, "Could not replay journal segment " + segment.getValue().getName(), e);
+            }
+        }
+
+        if (replayed > 0) {
+            logger.info("Replayed " + replayed + " journal records");
+        }
+    }
+
+    /**
+     * Starts writing to a fresh segment after every existing one and the
+     * snapshot's, so a segment torn by a crash is never appended to.
+     */
+    public void open(long snapshotSegment) {
+        if (writer != null) {
+            throw new IllegalStateException("Journal is already open");
+        }
+
+        directory.mkdirs();
+        long last = snapshotSegment;
+        for (long segment : listSegments().keySet()) {
+            last = Math.max(last, segment);
+        }
+
+        activeSegment = last + 1;
+        long firstSegment = activeSegment;
+        writer = new Thread(() -> runWriter(firstSegment), "TreasureHunt-Journal");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    @Override
+    public void appendSpawn(ChestRecord record) {
+        append(new Entry(SPAWN, record.getId(), record));
+    }
+
+    @Override
+    public void appendLooted(UUID chestId) {
+        append(new Entry(LOOT, chestId, null));
+    }
+
+    @Override
+    public void appendRemove(UUID chestId) {
+        append(new Entry(REMOVE, chestId, null));
+    }
+
+    /**
+     * Closes the active segment and starts the next one. Records appended
+     * before this call are in the returned segment or earlier; records
+     * appended after it are not.
+     */
+    public long roll() {
+        long closed = activeSegment++;
+        pendingRecords = 0;
+        queue.add(ROLL);
+        return closed;
+    }
+
+    /**
+     * Deletes every segment up to and including {@code segment} once the
+     * writer has finished with them.
+     */
+    public void deleteThrough(long segment) {
+        queue.add(new Delete(segment));
+    }
+
+    public int getPendingRecords() {
+        return pendingRecords;
+    }
+
+    public void close() {
+        if (writer == null) {
+            return;
+        }
+
+        queue.add(STOP);
+        try {
+            writer.join(10000L);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        writer = null;
+    }
+
+    private void append(Entry entry) {
+        if (writer == null) {
+            return;
+        }
+        pendingRecords++;
+        queue.add(entry);
+    }
+
+    private void runWriter(long segment) {
+        SegmentWriter out = openSegment(segment);
+        List<Object> batch = new ArrayList<>();
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream(128);
+        CRC32 crc = new CRC32();
+        boolean running = true;
+
+        while (running) {
+            batch.clear();
+            try {
+                batch.add(queue.take());
+            } catch (InterruptedException e) {
+                continue;
+            }
+            queue.drainTo(batch);
+
+            for (Object item : batch) {
+                if (item instanceof Entry) {
+                    if (out != null) {
+                        out.write((Entry) item, buffer, crc);
+                    }
+                } else if (item == ROLL) {
+                    if (out != null) {
+                        out.close();
+                    }
+                    out = openSegment(++segment);
+                } else if (item instanceof Delete) {
+                    deleteSegments(((Delete) item).throughSegment, segment);
+                } else if (item == STOP) {
+                    running = false;
+                }
+            }
+
+            if (out != null) {
+                out.sync();
+            }
+        }
+
+        if (out != null) {
+            out.close();
+        }
+    }
+
+    private SegmentWriter openSegment(long segment) {
+        File file = new File(directory, String.format("segment-%06d.log", segment));
+        try {
+            return new SegmentWriter(file);
+        } catch (IOException e) {
+            logger.log(Level.SEVERE, "Could not open journal segment " + file.getName(), e);
+            return null;
+        }
+    }
+
+    private void deleteSegments(long throughSegment, long activeSegment) {
+        for (Map.Entry<Long, File> segment : listSegments().entrySet()) {
+            if (segment.getKey() <= throughSegment && segment.getKey() != activeSegment
+                    && !segment.getValue().delete()) {
+                logger.warning("Could not delete journal segment " + segment.getValue().getName());
+            }
+        }
+    }
+
+    private TreeMap<Long, File> listSegments() {
+        TreeMap<Long, File> segments = new TreeMap<>();
+        File[] files = directory.listFiles();
+        if (files == null) {
+            return segments;
+        }
+
+        for (File file : files) {
+            Matcher matcher = SEGMENT_NAME.matcher(file.getName());
+            if (matcher.matches()) {
+                segments.put(Long.parseLong(matcher.group(1)), file);
+            }
+        }
+        return segments;
+    }
+
+    private byte[] readRecord(DataInputStream in, File file) throws IOException {
+        int length;
+        try {
+            length = in.readInt();
+        } catch (EOFException e) {
+            return null;
+        }
+
+        try {
+            int checksum = in.readInt();
+            if (length <= 0 || length > MAX_RECORD_SIZE) {
+                logger.warning("Corrupt record in journal segment " + file.getName() + ", ignoring the rest of it");
+                return null;
+            }
+
+            byte[] payload = new byte[length];
+            in.readFully(payload);
+
+            CRC32 crc = new CRC32();
+            crc.update(payload, 0, payload.length);
+            if ((int) crc.getValue() != checksum) {
+                logger.warning("Checksum mismatch in journal segment " + file.getName() + ", ignoring the rest of it");
+                return null;
+            }
+            return payload;
+        } catch (EOFException e) {
+            logger.warning("Journal segment " + file.getName() + " ends with a partial record, ignoring it");
+            return null;
+        }
+    }
+
+    private void apply(byte[] payload, Map<UUID, ChestRecord> records) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(payload));
+        byte type = in.readByte();
+        UUID chestId = new UUID(in.readLong(), in.readLong());
+
+        switch (type) {
+            case SPAWN:
+                String worldName = in.readUTF();
+                int x = in.readInt();
+                int y = in.readInt();
+                int z = in.readInt();
+                String tier = in.readUTF();
+                long spawnTime = in.readLong();
+                boolean looted = in.readBoolean();
+                records.put(chestId, new ChestRecord(chestId, worldName, x, y, z, tier, spawnTime, looted));
+                break;
+            case LOOT:
+                ChestRecord record = records.get(chestId);
+                if (record != null) {
+                    records.put(chestId, record.withLooted(true));
+                }
+                break;
+            case REMOVE:
+                records.remove(chestId);
+                break;
+            default:
+                logger.warning("Unknown journal record type: " + type);
+        }
+    }
+
+    private static final class Entry {
+        private final byte type;
+        private final UUID chestId;
+        private final ChestRecord record;
+
+        private Entry(byte type, UUID chestId, ChestRecord record) {
+            this.type = type;
+            this.chestId = chestId;
+            this.record = record;
+        }
+    }
+
+    private static final class Delete {
+        private final long throughSegment;
+
+        private Delete(long throughSegment) {
+            this.throughSegment = throughSegment;
+        }
+    }
+
+    private final class SegmentWriter {
+        private final File file;
+        private final FileOutputStream fileOut;
+        private final DataOutputStream out;
+
+        private SegmentWriter(File file) throws IOException {
+            this.file = file;
+            this.fileOut = new FileOutputStream(file, true);
+            this.out = new DataOutputStream(new BufferedOutputStream(fileOut, 8192));
+        }
+
+        private void write(Entry entry, ByteArrayOutputStream buffer, CRC32 crc) {
+            try {
+                buffer.reset();
+                DataOutputStream payload = new DataOutputStream(buffer);
+                payload.writeByte(entry.type);
+                payload.writeLong(entry.chestId.getMostSignificantBits());
+                payload.writeLong(entry.chestId.getLeastSignificantBits());
+
+                if (entry.type == SPAWN) {
+                    ChestRecord record = entry.record;
+                    payload.writeUTF(record.getWorldName());
+                    payload.writeInt(record.getX());
+                    payload.writeInt(record.getY());
+                    payload.writeInt(record.getZ());
+                    payload.writeUTF(record.getTier());
+                    payload.writeLong(record.getSpawnTime());
+                    payload.writeBoolean(record.isLooted());
+                }
+                payload.flush();
+
+                byte[] bytes = buffer.toByteArray();
+                crc.reset();
+                crc.update(bytes, 0, bytes.length);
+                out.writeInt(bytes.length);
+                out.writeInt((int) crc.getValue());
+                out.write(bytes);
+            } catch (IOException e) {
+                logger.log(Level.SEVERE, "Could not append to journal segment " + file.getName(), e);
+            }
+        }
+
+        private void sync() {
+            try {
+                out.flush();
+                fileOut.getChannel().force(false);
+            } catch (IOException e) {
+                logger.log(Level.SEVERE, "Could not sync journal segment " + file.getName(), e);
+            }
+        }
+
+        private void close() {
+            sync();
+            try {
+                out.close();
+            } catch (IOException e) {
+                logger.log(Level.WARNING, "Could not close journal segment " + file.getName(), e);
+            }
+        }
+    }
+}
@@ -0,0 +1,43 @@
+package com.dammnranaah.treasurehunt.storage;
+
+import com.dammnranaah.treasurehunt.models.ChestRecord;
+
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+
+public class ChestSnapshot {
+
+    private final Map<UUID, ChestRecord> records;
+    private final long journalSegment;
+
+    public ChestSnapshot(Map<UUID, ChestRecord> records, long journalSegment) {
+        this.records = records;
+        this.journalSegment = journalSegment;
+    }
+
+    public static ChestSnapshot of(Collection<ChestRecord> records, long journalSegment) {
+        Map<UUID, ChestRecord> byId = new LinkedHashMap<>();
+        for (ChestRecord record : records) {
+            byId.put(record.getId(), record);
+        }
+        return new ChestSnapshot(byId, journalSegment);
+    }
+
+    public static ChestSnapshot empty() {
+        return new ChestSnapshot(new LinkedHashMap<>(), 0L);
+    }
+
+    /**
+     * Records keyed by chest id, in file order. The map is mutable so the
+     * journal can be replayed on top of it.
+     */
+    public Map<UUID, ChestRecord> getRecords() {
+        return records;
+    }
+
+    public long getJournalSegment() {
+        return journalSegment;
+    }
+}
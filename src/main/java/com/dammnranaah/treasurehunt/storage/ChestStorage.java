@@ -0,0 +1,27 @@
+package com.dammnranaah.treasurehunt.storage;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Snapshot store for chest state. The journal covers changes made after the
+ * snapshot, so implementations only ever read or replace the whole set.
+ */
+public interface ChestStorage {
+
+    String getName();
+
+    /**
+     * The backing file, or {@code null} if the storage is not file based.
+     */
+    File getFile();
+
+    boolean exists();
+
+    ChestSnapshot load() throws IOException;
+
+    void save(ChestSnapshot snapshot) throws IOException;
+
+    default void close() {
+    }
+}
@@ -0,0 +1,138 @@
+package com.dammnranaah.treasurehunt.storage;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Minimal fixed-size JDBC connection pool. Connections are opened lazily,
+ * checked with {@link Connection#isValid} when borrowed and replaced if dead.
+ */
+public class ConnectionPool implements AutoCloseable {
+
+    private static final long BORROW_TIMEOUT_MILLIS = 10000L;
+
+    private final String url;
+    private final String username;
+    private final String password;
+    private final BlockingQueue<Connection> idle;
+    private final int maxSize;
+    private int opened;
+    private boolean closed;
+
+    public ConnectionPool(String url, String username, String password, int maxSize) {
+        this.url = url;
+        this.username = username;
+        this.password = password;
+        this.maxSize = Math.max(1, maxSize);
+        this.idle = new ArrayBlockingQueue<>(this.maxSize);
+    }
+
+    public Connection borrow() throws SQLException {
+        Connection connection = idle.poll();
+        if (connection == null && reserve()) {
+            try {
+                return open();
+            } catch (SQLException e) {
+                unreserve();
+                throw e;
+            }
+        }
+
+        if (connection == null) {
+            try {
+                connection = idle.poll(BORROW_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new SQLException("Interrupted while waiting for a database connection", e);
+            }
+            if (connection == null) {
+                throw new SQLException("Timed out waiting for a database connection");
+            }
+        }
+
+        if (connection.isValid(2)) {
+            return connection;
+        }
+
+        closeQuietly(connection);
+        try {
+            return open();
+        } catch (SQLException e) {
+            unreserve();
+            throw e;
+        }
+    }
+
+    /**
+     * Returns a connection to the pool. Pass {@code broken} after an error
+     * that may have left it unusable, so it is closed instead of reused.
+     */
+    public void release(Connection connection, boolean broken) {
+        boolean discard;
+        synchronized (this) {
+            discard = broken || closed;
+        }
+
+        if (!discard) {
+            try {
+                if (!connection.getAutoCommit()) {
+                    connection.rollback();
+                    connection.setAutoCommit(true);
+                }
+                discard = !idle.offer(connection);
+            } catch (SQLException e) {
+                discard = true;
+            }
+        }
+
+        if (discard) {
+            closeQuietly(connection);
+            unreserve();
+        }
+    }
+
+    @Override
+    public void close() {
+        synchronized (this) {
+            closed = true;
+        }
+
+        Connection connection;
+        while ((connection = idle.poll()) != null) {
+            closeQuietly(connection);
+            unreserve();
+        }
+    }
+
+    private Connection open() throws SQLException {
+        return username != null
+                ? DriverManager.getConnection(url, username, password)
+                : DriverManager.getConnection(url);
+    }
+
+    private synchronized boolean reserve() throws SQLException {
+        if (closed) {
+            throw new SQLException("Connection pool is closed");
+        }
+        if (opened < maxSize) {
+            opened++;
+            return true;
+        }
+        return false;
+    }
+
+    private synchronized void unreserve() {
+        opened--;
+    }
+
+    private static void closeQuietly(Connection connection) {
+        try {
+            connection.close();
+        } catch (SQLException ignored) {
+        }
+    }
+}
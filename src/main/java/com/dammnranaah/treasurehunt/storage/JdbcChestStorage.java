@@ -0,0 +1,467 @@
+package com.dammnranaah.treasurehunt.storage;
+
+import com.dammnranaah.treasurehunt.models.ChestRecord;
+
+import java.io.File;
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Chest storage in a SQL table, shared by several servers through a
+ * {@code server_id} column.
+ *
+ * <p>Rows are kept current change by change: spawns, loots and removals are
+ * queued from the main thread and written by a background thread in batched
+ * prepared statements, one transaction per drained batch. Full snapshots are
+ * written when importing from another storage type, and after a batch could
+ * not be written: the table is then marked out of sync until the next
+ * {@link #resync(ChestSnapshot)} replaces this server's rows.</p>
+ */
+public class JdbcChestStorage implements ChestStorage, ChestChangeLog {
+
+    private static final int MAX_ATTEMPTS = 3;
+    private static final Object STOP = new Object();
+
+    public enum Dialect {
+        MYSQL("com.mysql.cj.jdbc.Driver", "com.mysql.jdbc.Driver"),
+        SQLITE("org.sqlite.JDBC");
+
+        private final String[] drivers;
+
+        Dialect(String... drivers) {
+            this.drivers = drivers;
+        }
+
+        private void loadDriver() {
+            for (String driver : drivers) {
+                try {
+                    Class.forName(driver);
+                    return;
+                } catch (ClassNotFoundException ignored) {
+                }
+            }
+        }
+    }
+
+    private final Dialect dialect;
+    private final String table;
+    private final String serverId;
+    private final int batchSize;
+    private final Logger logger;
+    private final ConnectionPool pool;
+    private final BlockingQueue<Object> queue;
+    private final String upsertSql;
+    private final AtomicBoolean outOfSync;
+    private Thread writer;
+    private boolean tableExisted;
+
+    public JdbcChestStorage(Dialect dialect, String url, String username, String password, String tablePrefix,
+                            String serverId, int poolSize, int batchSize, Logger logger) {
+        this.dialect = dialect;
+        this.table = tablePrefix + "chests";
+        this.serverId = serverId;
+        this.batchSize = Math.max(1, batchSize);
+        this.logger = logger;
+        this.pool = new ConnectionPool(url, username, password, dialect == Dialect.SQLITE ? 1 : poolSize);
+        this.queue = new LinkedBlockingQueue<>();
+        this.outOfSync = new AtomicBoolean();
+        this.upsertSql = dialect == Dialect.MYSQL
+                ? "INSERT INTO " + table + " (id, server_id, world, x, y, z, tier, spawn_time, looted) "
+                        + "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?) ON DUPLICATE KEY UPDATE server_id = VALUES(server_id), "
+                        + "world = VALUES(world), x = VALUES(x), y = VALUES(y), z = VALUES(z), tier = VALUES(tier), "
+                        + "spawn_time = VALUES(spawn_time), looted = VALUES(looted)"
+                : "INSERT OR REPLACE INTO " + table + " (id, server_id, world, x, y, z, tier, spawn_time, looted) "
+                        + "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?)";
+    }
+
+    public static JdbcChestStorage mysql(String host, int port, String database, String username, String password,
+                                         String tablePrefix, String serverId, int poolSize, int batchSize,
+                                         Logger logger) {
+        String url = "jdbc:mysql://" + host + ":" + port + "/" + database
+                + "?useSSL=false&rewriteBatchedStatements=true";
+        return new JdbcChestStorage(Dialect.MYSQL, url, username, password, tablePrefix, serverId,
+                poolSize, batchSize, logger);
+    }
+
+    public static JdbcChestStorage sqlite(File file, String tablePrefix, String serverId, int batchSize, Logger logger) {
+        file.getAbsoluteFile().getParentFile().mkdirs();
+        return new JdbcChestStorage(Dialect.SQLITE, "jdbc:sqlite:" + file.getAbsolutePath(), null, null,
+                tablePrefix, serverId, 1, batchSize, logger);
+    }
+
+    /**
+     * Connects, creates the table if needed and starts the writer thread.
+     */
+    public void open() throws SQLException {
+        dialect.loadDriver();
+
+        Connection connection = pool.borrow();
+        boolean broken = true;
+        try {
+            tableExisted = tableExists(connection);
+            try (Statement statement = connection.createStatement()) {
+                if (dialect == Dialect.MYSQL) {
+                    statement.executeUpdate("CREATE TABLE IF NOT EXISTS " + table + " ("
+                            + "id CHAR(36) NOT NULL PRIMARY KEY, server_id VARCHAR(64) NOT NULL, "
+                            + "world VARCHAR(128) NOT NULL, x INT NOT NULL, y INT NOT NULL, z INT NOT NULL, "
+                            + "tier VARCHAR(64) NOT NULL, spawn_time BIGINT NOT NULL, looted BOOLEAN NOT NULL, "
+                            + "INDEX " + table + "_server (server_id))");
+                } else {
+                    statement.executeUpdate("CREATE TABLE IF NOT EXISTS " + table + " ("
+                            + "id CHAR(36) NOT NULL PRIMARY KEY, server_id VARCHAR(64) NOT NULL, "
+                            + "world VARCHAR(128) NOT NULL, x INTEGER NOT NULL, y INTEGER NOT NULL, "
+                            + "z INTEGER NOT NULL, tier VARCHAR(64) NOT NULL, spawn_time BIGINT NOT NULL, "
+                            + "looted BOOLEAN NOT NULL)");
+                    statement.executeUpdate("CREATE INDEX IF NOT EXISTS " + table + "_server ON "
+                            + table + " (server_id)");
+                }
+            }
+            broken = false;
+        } finally {
+            pool.release(connection, broken);
+        }
+
+        writer = new Thread(this::runWriter, "TreasureHunt-Storage");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    private boolean tableExists(Connection connection) throws SQLException {
+        DatabaseMetaData metaData = connection.getMetaData();
+        for (String name : new String[] {table, table.toUpperCase(), table.toLowerCase()}) {
+            try (ResultSet tables = metaData.getTables(connection.getCatalog(), null, name, null)) {
+                if (tables.next()) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public String getName() {
+        return dialect.name() + " table " + table;
+    }
+
+    @Override
+    public File getFile() {
+        return null;
+    }
+
+    /**
+     * Whether the table was already there before this server started, so
+     * chests are imported from files only into a brand-new table.
+     */
+    @Override
+    public boolean exists() {
+        return tableExisted;
+    }
+
+    @Override
+    public ChestSnapshot load() throws IOException {
+        Map<UUID, ChestRecord> records = new LinkedHashMap<>();
+
+        Connection connection = borrow();
+        boolean broken = true;
+        try (PreparedStatement statement = connection.prepareStatement(
+                "SELECT id, world, x, y, z, tier, spawn_time, looted FROM " + table + " WHERE server_id = ?")) {
+            statement.setString(1, serverId);
+            try (ResultSet rows = statement.executeQuery()) {
+                while (rows.next()) {
+                    UUID id = UUID.fromString(rows.getString(1));
+                    records.put(id, new ChestRecord(id, rows.getString(2), rows.getInt(3), rows.getInt(4),
+                            rows.getInt(5), rows.getString(6), rows.getLong(7), rows.getBoolean(8)));
+                }
+            }
+            broken = false;
+        } catch (SQLException e) {
+            throw new IOException("Could not load chests from " + table, e);
+        } finally {
+            pool.release(connection, broken);
+        }
+
+        return new ChestSnapshot(records, 0L);
+    }
+
+    /**
+     * Replaces this server's rows with the snapshot in one transaction.
+     */
+    @Override
+    public void save(ChestSnapshot snapshot) throws IOException {
+        Connection connection = borrow();
+        boolean broken = true;
+        try {
+            connection.setAutoCommit(false);
+            try (PreparedStatement delete = connection.prepareStatement(
+                    "DELETE FROM " + table + " WHERE server_id = ?");
+                 PreparedStatement upsert = connection.prepareStatement(upsertSql)) {
+                delete.setString(1, serverId);
+                delete.executeUpdate();
+
+                int batched = 0;
+                for (ChestRecord record : snapshot.getRecords().values()) {
+                    bindUpsert(upsert, record);
+                    upsert.addBatch();
+                    if (++batched % batchSize == 0) {
+                        upsert.executeBatch();
+                    }
+                }
+                upsert.executeBatch();
+            }
+            connection.commit();
+            broken = false;
+        } catch (SQLException e) {
+            throw new IOException("Could not save chests to " + table, e);
+        } finally {
+            pool.release(connection, broken);
+        }
+    }
+
+    /**
+     * Whether changes were dropped after failing to write, so the table no
+     * longer matches the server until a resync.
+     */
+    public boolean isOutOfSync() {
+        return outOfSync.get();
+    }
+
+    /**
+     * Queues a full replace of this server's rows behind the changes already
+     * queued, so it can't overwrite a newer change. The future completes
+     * with whether it was written; on failure the table stays out of sync.
+     */
+    public CompletableFuture<Boolean> resync(ChestSnapshot snapshot) {
+        outOfSync.set(false);
+        Resync resync = new Resync(snapshot);
+        queue.add(resync);
+        return resync.result;
+    }
+
+    @Override
+    public void appendSpawn(ChestRecord record) {
+        queue.add(new Change(Change.SPAWN, record.getId(), record));
+    }
+
+    @Override
+    public void appendLooted(UUID chestId) {
+        queue.add(new Change(Change.LOOT, chestId, null));
+    }
+
+    @Override
+    public void appendRemove(UUID chestId) {
+        queue.add(new Change(Change.REMOVE, chestId, null));
+    }
+
+    /**
+     * Writes everything still queued, then closes the pool.
+     */
+    @Override
+    public void close() {
+        if (writer != null) {
+            queue.add(STOP);
+            try {
+                writer.join(30000L);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            writer = null;
+        }
+        pool.close();
+    }
+
+    private Connection borrow() throws IOException {
+        try {
+            return pool.borrow();
+        } catch (SQLException e) {
+            throw new IOException("Could not connect to the database", e);
+        }
+    }
+
+    private void runWriter() {
+        List<Change> batch = new ArrayList<>(batchSize);
+        boolean running = true;
+
+        while (running) {
+            Object item;
+            try {
+                item = queue.take();
+            } catch (InterruptedException e) {
+                continue;
+            }
+
+            while (item != null) {
+                if (item == STOP) {
+                    running = false;
+                } else if (item instanceof Resync) {
+                    if (!batch.isEmpty()) {
+                        writeBatch(batch);
+                        batch.clear();
+                    }
+                    writeResync((Resync) item);
+                } else {
+                    batch.add((Change) item);
+                }
+                item = running && batch.size() < batchSize ? queue.poll() : null;
+            }
+
+            if (!batch.isEmpty()) {
+                writeBatch(batch);
+                batch.clear();
+            }
+        }
+    }
+
+    private void writeBatch(List<Change> batch) {
+        for (int attempt = 1; attempt <= MAX_ATTEMPTS; attempt++) {
+            Connection connection = null;
+            boolean broken = true;
+            try {
+                connection = pool.borrow();
+                connection.setAutoCommit(false);
+                executeBatch(connection, batch);
+                connection.commit();
+                broken = false;
+                return;
+            } catch (SQLException e) {
+                logger.log(attempt < MAX_ATTEMPTS ? Level.WARNING : Level.SEVERE,
+                        "Could not write " + batch.size() + " chest changes (attempt " + attempt + ")", e);
+            } finally {
+                if (connection != null) {
+                    pool.release(connection, broken);
+                }
+            }
+
+            if (attempt < MAX_ATTEMPTS && !sleep(1000L * attempt)) {
+                break;
+            }
+        }
+
+        outOfSync.set(true);
+        logger.severe("Dropped " + batch.size() + " chest changes, all chests will be rewritten to " + table
+                + " on the next save");
+    }
+
+    private void writeResync(Resync resync) {
+        try {
+            save(resync.snapshot);
+            resync.result.complete(true);
+        } catch (IOException e) {
+            outOfSync.set(true);
+            logger.log(Level.SEVERE, "Could not rewrite chests to " + table + ", retrying on the next save", e);
+            resync.result.complete(false);
+        }
+    }
+
+    private static boolean sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    /**
+     * A chest is only ever spawned, then looted, then removed, so running
+     * all upserts, then all loot updates, then all deletes keeps each
+     * chest's changes in order.
+     */
+    private void executeBatch(Connection connection, List<Change> batch) throws SQLException {
+        try (PreparedStatement upsert = connection.prepareStatement(upsertSql);
+             PreparedStatement loot = connection.prepareStatement(
+                     "UPDATE " + table + " SET looted = ? WHERE id = ?");
+             PreparedStatement delete = connection.prepareStatement(
+                     "DELETE FROM " + table + " WHERE id = ?")) {
+            int upserts = 0;
+            int loots = 0;
+            int deletes = 0;
+
+            for (Change change : batch) {
+                switch (change.type) {
+                    case Change.SPAWN:
+                        bindUpsert(upsert, change.record);
+                        upsert.addBatch();
+                        upserts++;
+                        break;
+                    case Change.LOOT:
+                        loot.setBoolean(1, true);
+                        loot.setString(2, change.chestId.toString());
+                        loot.addBatch();
+                        loots++;
+                        break;
+                    case Change.REMOVE:
+                        delete.setString(1, change.chestId.toString());
+                        delete.addBatch();
+                        deletes++;
+                        break;
+                    default:
+                        break;
+                }
+            }
+
+            if (upserts > 0) {
+                upsert.executeBatch();
+            }
+            if (loots > 0) {
+                loot.executeBatch();
+            }
+            if (deletes > 0) {
+                delete.executeBatch();
+            }
+        }
+    }
+
+    private void bindUpsert(PreparedStatement statement, ChestRecord record) throws SQLException {
+        statement.setString(1, record.getId().toString());
+        statement.setString(2, serverId);
+        statement.setString(3, record.getWorldName());
+        statement.setInt(4, record.getX());
+        statement.setInt(5, record.getY());
+        statement.setInt(6, record.getZ());
+        statement.setString(7, record.getTier());
+        statement.setLong(8, record.getSpawnTime());
+        statement.setBoolean(9, record.isLooted());
+    }
+
+    private static final class Resync {
+        private final ChestSnapshot snapshot;
+        private final CompletableFuture<Boolean> result = new CompletableFuture<>();
+
+        private Resync(ChestSnapshot snapshot) {
+            this.snapshot = snapshot;
+        }
+    }
+
+    private static final class Change {
+        private static final byte SPAWN = 1;
+        private static final byte LOOT = 2;
+        private static final byte REMOVE = 3;
+
+        private final byte type;
+        private final UUID chestId;
+        private final ChestRecord record;
+
+        private Change(byte type, UUID chestId, ChestRecord record) {
+            this.type = type;
+            this.chestId = chestId;
+            this.record = record;
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package com.dammnranaah.treasurehunt.storage;
+
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Writes snapshots to a {@link ChestStorage} on a background thread, one at
+ * a time. A snapshot submitted while another is still waiting replaces it,
+ * so a burst of save requests costs at most one write in flight plus one
+ * more for the newest state.
+ */
+public class SnapshotWriter {
+
+    private final ChestStorage storage;
+    private final ExecutorService executor;
+    private ChestSnapshot pending;
+    private CompletableFuture<ChestSnapshot> pendingResult;
+    private boolean writing;
+
+    public SnapshotWriter(ChestStorage storage) {
+        this.storage = storage;
+        this.executor = Executors.newSingleThreadExecutor(task -> {
+            Thread thread = new Thread(task, "TreasureHunt-Snapshot");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Queues {@code snapshot} for writing. The returned future completes with
+     * the snapshot that was actually written, which may be a newer one that
+     * replaced it.
+     */
+    public synchronized CompletableFuture<ChestSnapshot> save(ChestSnapshot snapshot) {
+        if (pending != null) {
+            pending = snapshot;
+            return pendingResult;
+        }
+
+        pending = snapshot;
+        pendingResult = new CompletableFuture<>();
+        CompletableFuture<ChestSnapshot> result = pendingResult;
+        if (!writing) {
+            writing = true;
+            executor.execute(this::drain);
+        }
+        return result;
+    }
+
+    /**
+     * Finishes queued writes and stops the writer thread.
+     */
+    public void close() {
+        executor.shutdown();
+        try {
+            executor.awaitTermination(30L, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void drain() {
+        while (true) {
+            ChestSnapshot snapshot;
+            CompletableFuture<ChestSnapshot> result;
+            synchronized (this) {
+                if (pending == null) {
+                    writing = false;
+                    return;
+                }
+                snapshot = pending;
+                result = pendingResult;
+                pending = null;
+                pendingResult = null;
+            }
+
+            try {
+                storage.save(snapshot);
+                result.complete(snapshot);
+            } catch (IOException | RuntimeException e) {
+                result.completeExceptionally(e);
+            }
+        }
+    }
+}
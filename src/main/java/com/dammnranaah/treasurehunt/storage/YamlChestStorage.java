@@ -0,0 +1,92 @@
+package com.dammnranaah.treasurehunt.storage;
+
+import com.dammnranaah.treasurehunt.models.ChestRecord;
+import org.bukkit.configuration.ConfigurationSection;
+import org.bukkit.configuration.InvalidConfigurationException;
+import org.bukkit.configuration.file.YamlConfiguration;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * The original chests.yml layout, kept as the default and for migrating to
+ * and from the other formats.
+ */
+public class YamlChestStorage implements ChestStorage {
+
+    private final File file;
+
+    public YamlChestStorage(File file) {
+        this.file = file;
+    }
+
+    @Override
+    public String getName() {
+        return file.getName();
+    }
+
+    @Override
+    public File getFile() {
+        return file;
+    }
+
+    @Override
+    public boolean exists() {
+        return file.isFile() && file.length() > 0;
+    }
+
+    @Override
+    public ChestSnapshot load() throws IOException {
+        YamlConfiguration config = new YamlConfiguration();
+        try {
+            config.load(file);
+        } catch (InvalidConfigurationException e) {
+            throw new IOException("Invalid YAML in " + file.getName(), e);
+        }
+
+        Map<UUID, ChestRecord> records = new LinkedHashMap<>();
+        ConfigurationSection chests = config.getConfigurationSection("chests");
+        if (chests != null) {
+            for (String key : chests.getKeys(false)) {
+                UUID uuid = UUID.fromString(key);
+                String worldName = chests.getString(key + ".world");
+                int x = (int) Math.floor(chests.getDouble(key + ".x"));
+                int y = (int) Math.floor(chests.getDouble(key + ".y"));
+                int z = (int) Math.floor(chests.getDouble(key + ".z"));
+                String tier = chests.getString(key + ".tier", "common");
+                long spawnTime = chests.getLong(key + ".spawn-time");
+                boolean looted = chests.getBoolean(key + ".looted", false);
+                records.put(uuid, new ChestRecord(uuid, worldName, x, y, z, tier, spawnTime, looted));
+            }
+        }
+
+        return new ChestSnapshot(records, config.getLong("journal-segment", 0L));
+    }
+
+    @Override
+    public void save(ChestSnapshot snapshot) throws IOException {
+        YamlConfiguration config = new YamlConfiguration();
+
+        for (ChestRecord record : snapshot.getRecords().values()) {
+            String path = "chests." + record.getId().toString();
+            config.set(path + ".world", record.getWorldName());
+            config.set(path + ".x", record.getX());
+            config.set(path + ".y", record.getY());
+            config.set(path + ".z", record.getZ());
+            config.set(path + ".tier", record.getTier());
+            config.set(path + ".spawn-time", record.getSpawnTime());
+            config.set(path + ".looted", record.isLooted());
+        }
+
+        if (snapshot.getJournalSegment() > 0) {
+            config.set("journal-segment", snapshot.getJournalSegment());
+        }
+
+        AtomicFiles.write(file, ByteBuffer.wrap(config.saveToString().getBytes(StandardCharsets.UTF_8)));
+    }
+}
@@ -0,0 +1,19 @@
+package com.dammnranaah.treasurehunt.tasks;
+
+import com.dammnranaah.treasurehunt.TreasureHunt;
+import org.bukkit.scheduler.BukkitRunnable;
+
+public class AutosaveTask extends BukkitRunnable {
+
+    private final TreasureHunt plugin;
+
+    public AutosaveTask(TreasureHunt plugin) {
+        this.plugin = plugin;
+    }
+
+    @Override
+    public void run() {
+        plugin.getChestManager().saveChestsAsync();
+        plugin.getChestManager().getSpawnHeatmap().saveAsync();
+    }
+}
@@ -0,0 +1,209 @@
+package com.dammnranaah.treasurehunt.tasks;
+
+import com.dammnranaah.treasurehunt.TreasureHunt;
+import org.bukkit.Location;
+import org.bukkit.scheduler.BukkitRunnable;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+
+/**
+ * Applies chest placements and removals in chunk order, a whole chunk at a
+ * time, doing at most {@code chest-spawn.mutation-tick-budget-ms} of work per
+ * tick. Mutations may be added while it runs until {@link #close()} is
+ * called; the future completes once it is closed and drained.
+ */
+public class BlockMutationPipeline extends BukkitRunnable {
+
+    private static final long PROGRESS_INTERVAL_TICKS = 100L;
+    private static final Comparator<Mutation> CHUNK_ORDER = Comparator
+            .comparing((Mutation mutation) -> mutation.worldId)
+            .thenComparingInt(mutation -> mutation.chunkX)
+            .thenComparingInt(mutation -> mutation.chunkZ)
+            .thenComparingInt(mutation -> mutation.y);
+
+    private final TreasureHunt plugin;
+    private final long budgetNanos;
+    private final List<Mutation> pending;
+    private final CompletableFuture<Integer> future;
+    private Consumer<BlockMutationPipeline> progressListener;
+    private int next;
+    private boolean sorted;
+    private boolean closed;
+    private boolean started;
+    private int total;
+    private int completed;
+    private long workNanos;
+    private long ticks;
+
+    public BlockMutationPipeline(TreasureHunt plugin) {
+        this.plugin = plugin;
+        this.budgetNanos = plugin.getConfigManager().getMutationTickBudget() * 1_000_000L;
+        this.pending = new ArrayList<>();
+        this.future = new CompletableFuture<>();
+        this.sorted = true;
+    }
+
+    public void add(Location location, Runnable mutation) {
+        if (closed) {
+            throw new IllegalStateException("Pipeline is closed");
+        }
+
+        pending.add(new Mutation(location, mutation));
+        sorted = false;
+        total++;
+    }
+
+    public BlockMutationPipeline start() {
+        if (!started) {
+            started = true;
+            runTaskTimer(plugin, 1L, 1L);
+            run();
+        }
+        return this;
+    }
+
+    /**
+     * No more mutations will be added; the future completes once the
+     * remaining ones are applied.
+     */
+    public BlockMutationPipeline close() {
+        closed = true;
+        if (started && !future.isDone() && getRemaining() == 0) {
+            finish();
+        }
+        return this;
+    }
+
+    /**
+     * Called every few seconds while mutations remain.
+     */
+    public BlockMutationPipeline onProgress(Consumer<BlockMutationPipeline> listener) {
+        this.progressListener = listener;
+        return this;
+    }
+
+    /**
+     * Completes with the number of mutations applied.
+     */
+    public CompletableFuture<Integer> getFuture() {
+        return future;
+    }
+
+    public boolean isClosed() {
+        return closed;
+    }
+
+    public int getTotal() {
+        return total;
+    }
+
+    public int getCompleted() {
+        return completed;
+    }
+
+    public int getRemaining() {
+        return total - completed;
+    }
+
+    /**
+     * Estimated time to apply the remaining mutations, from the average cost
+     * so far and the tick budget, or -1 before anything has been measured.
+     */
+    public long getEstimatedMillisRemaining() {
+        int remaining = getRemaining();
+        if (remaining == 0) {
+            return 0L;
+        }
+        if (completed == 0) {
+            return -1L;
+        }
+
+        double remainingNanos = (double) workNanos / completed * remaining;
+        long remainingTicks = budgetNanos > 0 ? (long) Math.ceil(remainingNanos / budgetNanos) : 1L;
+        return Math.max(remainingTicks, 1L) * 50L;
+    }
+
+    @Override
+    public void run() {
+        if (future.isDone()) {
+            return;
+        }
+
+        long start = System.nanoTime();
+        try {
+            work(start + budgetNanos);
+        } catch (RuntimeException e) {
+            plugin.getLogger().log(Level.SEVERE, "Failed to apply treasure chest block changes", e);
+            finish();
+            return;
+        } finally {
+            workNanos += System.nanoTime() - start;
+        }
+
+        if (closed && getRemaining() == 0) {
+            finish();
+        } else if (++ticks % PROGRESS_INTERVAL_TICKS == 0 && progressListener != null && getRemaining() > 0) {
+            progressListener.accept(this);
+        }
+    }
+
+    private void work(long deadline) {
+        if (!sorted) {
+            pending.subList(0, next).clear();
+            next = 0;
+            pending.sort(CHUNK_ORDER);
+            sorted = true;
+        }
+
+        while (next < pending.size()) {
+            Mutation first = pending.get(next);
+            do {
+                Mutation mutation = pending.get(next);
+                pending.set(next++, null);
+                completed++;
+                mutation.action.run();
+            } while (next < pending.size() && pending.get(next).isSameChunk(first));
+
+            if (budgetNanos > 0 && System.nanoTime() - deadline >= 0) {
+                break;
+            }
+        }
+
+        if (next == pending.size()) {
+            pending.clear();
+            next = 0;
+        }
+    }
+
+    private void finish() {
+        cancel();
+        future.complete(completed);
+    }
+
+
+    private static final class Mutation {
+        private final UUID worldId;
+        private final int chunkX;
+        private final int chunkZ;
+        private final int y;
+        private final Runnable action;
+
+        private Mutation(Location location, Runnable action) {
+            this.worldId = location.getWorld().getUID();
+            this.chunkX = location.getBlockX() >> 4;
+            this.chunkZ = location.getBlockZ() >> 4;
+            this.y = location.getBlockY();
+            this.action = action;
+        }
+
+        private boolean isSameChunk(Mutation other) {
+            return chunkX == other.chunkX && chunkZ == other.chunkZ && worldId.equals(other.worldId);
+        }
+    }
+}
@@ -0,0 +1,18 @@
+package com.dammnranaah.treasurehunt.tasks;
+
+import com.dammnranaah.treasurehunt.TreasureHunt;
+import org.bukkit.scheduler.BukkitRunnable;
+
+public class CandidateRefillTask extends BukkitRunnable {
+
+    private final TreasureHunt plugin;
+
+    public CandidateRefillTask(TreasureHunt plugin) {
+        this.plugin = plugin;
+    }
+
+    @Override
+    public void run() {
+        plugin.getChestManager().getCandidatePool().refill();
+    }
+}
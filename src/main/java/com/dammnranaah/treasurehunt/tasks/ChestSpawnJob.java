@@ -0,0 +1,143 @@
+package com.dammnranaah.treasurehunt.tasks;
+
+import com.dammnranaah.treasurehunt.TreasureHunt;
+import com.dammnranaah.treasurehunt.managers.ChestManager;
+import org.bukkit.Location;
+import org.bukkit.World;
+import org.bukkit.scheduler.BukkitRunnable;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.logging.Level;
+
+/**
+ * Spawns a batch of chests across as many ticks as needed, doing at most
+ * {@code chest-spawn.spawn-tick-budget-ms} of search work per tick. Location
+ * searches either run inline or, in async search mode, a few at a time in the
+ * background; found locations are placed by a {@link BlockMutationPipeline}
+ * in chunk order under its own budget.
+ */
+public class ChestSpawnJob extends BukkitRunnable {
+
+    private static final int MAX_CONCURRENT_SEARCHES = 4;
+
+    private final TreasureHunt plugin;
+    private final List<World> worlds;
+    private final boolean asyncSearch;
+    private final long budgetNanos;
+    private final BlockMutationPipeline placements;
+    private final List<UUID> spawned;
+    private final CompletableFuture<List<UUID>> future;
+    private int remaining;
+    private int searching;
+
+    public ChestSpawnJob(TreasureHunt plugin, List<World> worlds, int count) {
+        this.plugin = plugin;
+        this.worlds = worlds;
+        this.asyncSearch = plugin.getConfigManager().isAsyncSearchEnabled();
+        this.budgetNanos = plugin.getConfigManager().getSpawnTickBudget() * 1_000_000L;
+        this.placements = new BlockMutationPipeline(plugin);
+        this.spawned = new ArrayList<>();
+        this.future = new CompletableFuture<>();
+        this.remaining = count;
+    }
+
+    public CompletableFuture<List<UUID>> start() {
+        placements.getFuture().whenComplete((placed, error) -> future.complete(spawned));
+        placements.start();
+        runTaskTimer(plugin, 1L, 1L);
+        run();
+        return future;
+    }
+
+    @Override
+    public void run() {
+        if (isSearchDone()) {
+            return;
+        }
+
+        try {
+            work(System.nanoTime() + budgetNanos);
+        } catch (RuntimeException e) {
+            plugin.getLogger().log(Level.SEVERE, "Failed to spawn treasure chests", e);
+            remaining = 0;
+            searching = 0;
+        }
+
+        if (remaining == 0 && searching == 0) {
+            finishSearch();
+        }
+    }
+
+    private void work(long deadline) {
+        ChestManager chestManager = plugin.getChestManager();
+
+        while (remaining > 0) {
+            if (!chestManager.canSpawnMore()) {
+                remaining = 0;
+                return;
+            }
+
+            World world = chestManager.pickSpawnWorld(worlds);
+
+            if (asyncSearch) {
+                if (searching >= MAX_CONCURRENT_SEARCHES) {
+                    return;
+                }
+
+                remaining--;
+                searching++;
+                chestManager.findSpawnLocationAsync(world).whenComplete((location, error) -> {
+                    searching--;
+                    if (error != null) {
+                        plugin.getLogger().log(Level.WARNING, "Chest location search failed", error);
+                    } else if (location != null) {
+                        place(location);
+                    }
+                });
+            } else {
+                remaining--;
+                Location location = chestManager.findSpawnLocation(world);
+                if (location != null) {
+                    place(location);
+                }
+            }
+
+            if (isOverBudget(deadline)) {
+                return;
+            }
+        }
+    }
+
+    private boolean isOverBudget(long deadline) {
+        return budgetNanos > 0 && System.nanoTime() - deadline >= 0;
+    }
+
+    private void place(Location location) {
+        if (isSearchDone()) {
+            return;
+        }
+
+        // Concurrent searches can return the same or neighbouring spots, so each is checked again when placed
+        placements.add(location, () -> {
+            ChestManager chestManager = plugin.getChestManager();
+            if (chestManager.canSpawnMore() && chestManager.canPlaceChest(location)) {
+                UUID chestId = chestManager.spawnChest(location);
+                if (chestId != null) {
+                    spawned.add(chestId);
+                }
+            }
+        });
+    }
+
+    private boolean isSearchDone() {
+        return placements.isClosed();
+    }
+
+    private void finishSearch() {
+        cancel();
+        placements.close();
+    }
+}
@@ -1,6 +1,7 @@
 package com.dammnranaah.treasurehunt.tasks;
 
 import com.dammnranaah.treasurehunt.TreasureHunt;
+import com.dammnranaah.treasurehunt.managers.MetricsManager;
 import org.bukkit.Bukkit;
 import org.bukkit.scheduler.BukkitRunnable;
 
@@ -14,15 +15,21 @@ public class ChestSpawnTask extends BukkitRunnable {
 
     @Override
     public void run() {
+        long start = System.nanoTime();
+        MetricsManager metrics = plugin.getMetricsManager();
         int chestCount = plugin.getConfigManager().getChestCount();
         
-        int spawned = plugin.getChestManager().spawnChests(chestCount);
-        
-        if (spawned > 0 && plugin.getConfigManager().isBroadcastSpawnEnabled()) {
-            Bukkit.broadcastMessage(plugin.getConfigManager().getMessage("spawn"));
-        }
-        
-        plugin.getLogger().info("Spawned " + spawned + " treasure chests");
+        plugin.getChestManager().spawnChestsAsync(chestCount).thenAccept(spawnedChests -> {
+            metrics.record(MetricsManager.Timer.SPAWN_BATCH, start);
+            int spawned = spawnedChests.size();
+            
+            if (spawned > 0 && plugin.getConfigManager().isBroadcastSpawnEnabled()) {
+                Bukkit.broadcastMessage(plugin.getConfigManager().getMessage("spawn"));
+            }
+            
+            plugin.getLogger().info("Spawned " + spawned + " treasure chests");
+        });
+        metrics.record(MetricsManager.Timer.SPAWN_TASK, start);
     }
     
     public void scheduleCountdowns() {
@@ -37,9 +44,8 @@ public class ChestSpawnTask extends BukkitRunnable {
                 int delay = (interval - countdown) * 20 * 60;
                 
                 Bukkit.getScheduler().runTaskLater(plugin, () -> {
-                    String message = plugin.getConfigManager().getMessage("countdown")
-                            .replace("%time%", String.valueOf(countdown));
-                    Bukkit.broadcastMessage(message);
+                    Bukkit.broadcastMessage(plugin.getConfigManager().getMessageTemplate("countdown")
+                            .render("time", String.valueOf(countdown)));
                 }, delay);
             }
         }
@@ -0,0 +1,18 @@
+package com.dammnranaah.treasurehunt.tasks;
+
+import com.dammnranaah.treasurehunt.TreasureHunt;
+import org.bukkit.scheduler.BukkitRunnable;
+
+public class JournalCompactionTask extends BukkitRunnable {
+
+    private final TreasureHunt plugin;
+
+    public JournalCompactionTask(TreasureHunt plugin) {
+        this.plugin = plugin;
+    }
+
+    @Override
+    public void run() {
+        plugin.getChestManager().compactJournalIfNeeded();
+    }
+}
@@ -0,0 +1,36 @@
+package com.dammnranaah.treasurehunt.tasks;
+
+import com.dammnranaah.treasurehunt.TreasureHunt;
+import com.dammnranaah.treasurehunt.storage.AtomicFiles;
+import org.bukkit.scheduler.BukkitRunnable;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.logging.Level;
+
+/**
+ * Writes the plugin's metrics to {@code metrics.prom} in the data folder for
+ * a Prometheus node exporter textfile collector. Runs off the main thread.
+ */
+public class MetricsExportTask extends BukkitRunnable {
+
+    private final TreasureHunt plugin;
+    private final File file;
+
+    public MetricsExportTask(TreasureHunt plugin) {
+        this.plugin = plugin;
+        this.file = new File(plugin.getDataFolder(), "metrics.prom");
+    }
+
+    @Override
+    public void run() {
+        byte[] metrics = plugin.getMetricsManager().toPrometheus().getBytes(StandardCharsets.UTF_8);
+        try {
+            AtomicFiles.write(file, ByteBuffer.wrap(metrics));
+        } catch (IOException e) {
+            plugin.getLogger().log(Level.WARNING, "Could not write " + file.getName(), e);
+        }
+    }
+}
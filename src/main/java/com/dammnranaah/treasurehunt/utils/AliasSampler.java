@@ -0,0 +1,105 @@
+package com.dammnranaah.treasurehunt.utils;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Immutable weighted sampler using Vose's alias method. Building the table is
+ * O(n); each sample is one uniform index plus one coin flip, with no
+ * allocation.
+ */
+public final class AliasSampler<T> {
+
+    private final Object[] values;
+    private final double[] probability;
+    private final int[] alias;
+
+    private AliasSampler(Object[] values, double[] probability, int[] alias) {
+        this.values = values;
+        this.probability = probability;
+        this.alias = alias;
+    }
+
+    /**
+     * Builds a sampler from the given weights, in the map's iteration order.
+     * Entries with a weight of zero or less are ignored.
+     *
+     * @throws IllegalArgumentException if no entry has a positive weight
+     */
+    public static <T> AliasSampler<T> of(Map<T, ? extends Number> weights) {
+        List<T> keys = new ArrayList<>(weights.size());
+        List<Double> positive = new ArrayList<>(weights.size());
+        double total = 0;
+
+        for (Map.Entry<T, ? extends Number> entry : weights.entrySet()) {
+            double weight = entry.getValue().doubleValue();
+            if (weight > 0 && !Double.isInfinite(weight)) {
+                keys.add(entry.getKey());
+                positive.add(weight);
+                total += weight;
+            }
+        }
+
+        if (keys.isEmpty()) {
+            throw new IllegalArgumentException("At least one positive weight is required");
+        }
+
+        int n = keys.size();
+        double[] probability = new double[n];
+        int[] alias = new int[n];
+        double[] scaled = new double[n];
+        ArrayDeque<Integer> small = new ArrayDeque<>();
+        ArrayDeque<Integer> large = new ArrayDeque<>();
+
+        for (int i = 0; i < n; i++) {
+            scaled[i] = positive.get(i) * n / total;
+            if (scaled[i] < 1.0) {
+                small.push(i);
+            } else {
+                large.push(i);
+            }
+        }
+
+        while (!small.isEmpty() && !large.isEmpty()) {
+            int less = small.pop();
+            int more = large.pop();
+
+            probability[less] = scaled[less];
+            alias[less] = more;
+
+            scaled[more] = (scaled[more] + scaled[less]) - 1.0;
+            if (scaled[more] < 1.0) {
+                small.push(more);
+            } else {
+                large.push(more);
+            }
+        }
+
+        // Whatever is left is 1.0 up to rounding error
+        while (!large.isEmpty()) {
+            int index = large.pop();
+            probability[index] = 1.0;
+            alias[index] = index;
+        }
+        while (!small.isEmpty()) {
+            int index = small.pop();
+            probability[index] = 1.0;
+            alias[index] = index;
+        }
+
+        return new AliasSampler<>(keys.toArray(), probability, alias);
+    }
+
+    @SuppressWarnings("unchecked")
+    public T sample(Random random) {
+        int column = random.nextInt(values.length);
+        return (T) (random.nextDouble() < probability[column] ? values[column] : values[alias[column]]);
+    }
+
+    public int size() {
+        return values.length;
+    }
+}
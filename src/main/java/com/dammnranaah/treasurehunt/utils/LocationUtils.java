@@ -66,6 +66,21 @@ public class LocationUtils {
     }
     
     
+    public static long blockKey(Location location) {
+        return blockKey(location.getBlockX(), location.getBlockY(), location.getBlockZ());
+    }
+    
+    
+    public static long blockKey(int x, int y, int z) {
+        return ((long) (x & 0x3FFFFFF) << 38) | ((long) (z & 0x3FFFFFF) << 12) | (y & 0xFFF);
+    }
+    
+    
+    public static long chunkKey(int chunkX, int chunkZ) {
+        return ((long) chunkX << 32) | (chunkZ & 0xFFFFFFFFL);
+    }
+    
+    
     public static double getDistance(Location loc1, Location loc2) {
         if (loc1 == null || loc2 == null || !loc1.getWorld().equals(loc2.getWorld())) {
             return -1;
@@ -0,0 +1,120 @@
+package com.dammnranaah.treasurehunt.utils;
+
+import org.bukkit.ChatColor;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A configured message with its colour codes translated once and its
+ * %placeholder% tokens split out, so rendering only appends the literal
+ * parts and the supplied values into a reused builder.
+ */
+public final class MessageTemplate {
+
+    public static final MessageTemplate EMPTY = compile("");
+
+    private static final ThreadLocal<StringBuilder> BUILDER = ThreadLocal.withInitial(() -> new StringBuilder(128));
+
+    private final String text;
+    // Literal text and placeholder names alternate, starting with a literal
+    private final String[] parts;
+
+    private MessageTemplate(String text, String[] parts) {
+        this.text = text;
+        this.parts = parts;
+    }
+
+    public static MessageTemplate compile(String message) {
+        String text = ChatColor.translateAlternateColorCodes('&', message);
+        List<String> parts = new ArrayList<>();
+        int literalStart = 0;
+        int search = 0;
+
+        while (true) {
+            int open = text.indexOf('%', search);
+            int close = open < 0 ? -1 : text.indexOf('%', open + 1);
+            if (close < 0) {
+                break;
+            }
+
+            String name = text.substring(open + 1, close);
+            if (!isPlaceholderName(name)) {
+                // Not a placeholder, so the closing % may still open one
+                search = close;
+                continue;
+            }
+
+            parts.add(text.substring(literalStart, open));
+            parts.add(name);
+            literalStart = close + 1;
+            search = literalStart;
+        }
+        parts.add(text.substring(literalStart));
+
+        return new MessageTemplate(text, parts.toArray(new String[0]));
+    }
+
+    /**
+     * The message with colours translated and placeholders left in place.
+     */
+    public String getText() {
+        return text;
+    }
+
+    public boolean isEmpty() {
+        return text.isEmpty();
+    }
+
+    public String render(String name, String value) {
+        return render(new String[] {name, value});
+    }
+
+    /**
+     * Renders the message with the given placeholder name/value pairs, e.g.
+     * {@code render("player", name, "time", "5")}. Placeholders without a
+     * value are kept as written.
+     */
+    public String render(String... namesAndValues) {
+        if (parts.length == 1) {
+            return text;
+        }
+
+        StringBuilder out = BUILDER.get();
+        out.setLength(0);
+        out.append(parts[0]);
+        for (int i = 1; i < parts.length; i += 2) {
+            String value = valueOf(parts[i], namesAndValues);
+            if (value != null) {
+                out.append(value);
+            } else {
+                out.append('%').append(parts[i]).append('%');
+            }
+            out.append(parts[i + 1]);
+        }
+        return out.toString();
+    }
+
+    private static String valueOf(String name, String[] namesAndValues) {
+        for (int i = 0; i + 1 < namesAndValues.length; i += 2) {
+            if (namesAndValues[i].equals(name)) {
+                return namesAndValues[i + 1];
+            }
+        }
+        return null;
+    }
+
+    private static boolean isPlaceholderName(String name) {
+        if (name.isEmpty()) {
+            return false;
+        }
+
+        for (int i = 0; i < name.length(); i++) {
+            char c = name.charAt(i);
+            if (!(c >= 'a' && c <= 'z') && !(c >= '0' && c <= '9') && c != '-' && c != '_') {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,65 @@
+package com.dammnranaah.treasurehunt.utils;
+
+import org.bukkit.inventory.Inventory;
+import org.bukkit.inventory.ItemStack;
+
+import java.util.Random;
+
+/**
+ * Hands out the empty slots of an inventory in random order by drawing from a
+ * lazily shuffled permutation, so every pick is O(1) and the picker can never
+ * spin on a full inventory. The buffer is reused between inventories, so one
+ * instance must not be shared across threads.
+ */
+public class SlotPicker {
+
+    private int[] freeSlots = new int[54];
+    private int remaining;
+
+    public void reset(Inventory inventory) {
+        int size = inventory.getSize();
+        if (freeSlots.length < size) {
+            freeSlots = new int[size];
+        }
+
+        remaining = 0;
+        for (int slot = 0; slot < size; slot++) {
+            if (inventory.getItem(slot) == null) {
+                freeSlots[remaining++] = slot;
+            }
+        }
+    }
+
+    public int remaining() {
+        return remaining;
+    }
+
+    public int next(Random random) {
+        if (remaining == 0) {
+            return -1;
+        }
+
+        int index = random.nextInt(remaining);
+        int slot = freeSlots[index];
+        freeSlots[index] = freeSlots[--remaining];
+        return slot;
+    }
+
+    /**
+     * Puts the item into a random free slot, or merges it into matching stacks
+     * once the inventory is full.
+     *
+     * @return false if nothing of the item could be placed
+     */
+    public boolean place(Inventory inventory, ItemStack item, Random random) {
+        int slot = next(random);
+        if (slot >= 0) {
+            inventory.setItem(slot, item);
+            return true;
+        }
+
+        int amount = item.getAmount();
+        ItemStack leftover = inventory.addItem(item).get(0);
+        return leftover == null || leftover.getAmount() < amount;
+    }
+}
@@ -0,0 +1,258 @@
+package com.dammnranaah.treasurehunt.utils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * Uniform grid over block coordinates, bucketed by x/z cell. Nearest-neighbour
+ * searches expand ring by ring around the query cell and stop as soon as no
+ * unvisited cell can hold a closer entry, so their cost follows the number of
+ * nearby entries rather than the total.
+ */
+public class SpatialGrid<T> {
+
+    private final int cellSize;
+    private final LongObjectMap<Cell> cells;
+    private int size;
+    private int minCellX = Integer.MAX_VALUE;
+    private int maxCellX = Integer.MIN_VALUE;
+    private int minCellZ = Integer.MAX_VALUE;
+    private int maxCellZ = Integer.MIN_VALUE;
+
+    public SpatialGrid(int cellSize) {
+        if (cellSize <= 0) {
+            throw new IllegalArgumentException("Cell size must be positive");
+        }
+        this.cellSize = cellSize;
+        this.cells = new LongObjectMap<>();
+    }
+
+    public void add(int x, int y, int z, T value) {
+        int cellX = Math.floorDiv(x, cellSize);
+        int cellZ = Math.floorDiv(z, cellSize);
+        long key = cellKey(cellX, cellZ);
+
+        Cell cell = cells.get(key);
+        if (cell == null) {
+            cell = new Cell();
+            cells.put(key, cell);
+            minCellX = Math.min(minCellX, cellX);
+            maxCellX = Math.max(maxCellX, cellX);
+            minCellZ = Math.min(minCellZ, cellZ);
+            maxCellZ = Math.max(maxCellZ, cellZ);
+        }
+
+        cell.add(x, y, z, value);
+        size++;
+    }
+
+    public boolean remove(int x, int y, int z, T value) {
+        long key = cellKey(Math.floorDiv(x, cellSize), Math.floorDiv(z, cellSize));
+        Cell cell = cells.get(key);
+        if (cell == null || !cell.remove(value)) {
+            return false;
+        }
+
+        if (cell.size == 0) {
+            cells.remove(key);
+        }
+        if (--size == 0) {
+            minCellX = minCellZ = Integer.MAX_VALUE;
+            maxCellX = maxCellZ = Integer.MIN_VALUE;
+        }
+        return true;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public T nearest(int x, int y, int z) {
+        List<T> result = nearest(x, y, z, 1);
+        return result.isEmpty() ? null : result.get(0);
+    }
+
+    /**
+     * Returns up to {@code k} entries ordered from nearest to farthest.
+     */
+    public List<T> nearest(int x, int y, int z, int k) {
+        if (k <= 0 || size == 0) {
+            return Collections.emptyList();
+        }
+
+        PriorityQueue<Candidate<T>> best = new PriorityQueue<>(Math.min(k, size) + 1,
+                (a, b) -> Long.compare(b.distanceSquared, a.distanceSquared));
+
+        int cellX = Math.floorDiv(x, cellSize);
+        int cellZ = Math.floorDiv(z, cellSize);
+        int maxRing = Math.max(
+                Math.max(cellX - minCellX, maxCellX - cellX),
+                Math.max(cellZ - minCellZ, maxCellZ - cellZ));
+        long visitedCells = 0;
+
+        for (int ring = 0; ring <= maxRing; ring++) {
+            visitedCells += ring == 0 ? 1 : 8L * ring;
+            if (visitedCells > 2L * cells.size() + 8) {
+                best.clear();
+                cells.forEachValue(cell -> cell.collect(x, y, z, k, Long.MAX_VALUE, best));
+                break;
+            }
+
+            scanRing(cellX, cellZ, ring, x, y, z, k, best);
+
+            long reach = (long) ring * cellSize;
+            if (best.size() == k && best.peek().distanceSquared <= reach * reach) {
+                break;
+            }
+        }
+
+        return drain(best);
+    }
+
+    /**
+     * Returns every entry within {@code radius} blocks, ordered from nearest to farthest.
+     */
+    public List<T> within(int x, int y, int z, double radius) {
+        if (radius < 0 || size == 0) {
+            return Collections.emptyList();
+        }
+
+        long radiusSquared = (long) Math.floor(radius * radius);
+        PriorityQueue<Candidate<T>> found = new PriorityQueue<>(
+                (a, b) -> Long.compare(b.distanceSquared, a.distanceSquared));
+
+        int reach = (int) Math.ceil(radius);
+        int fromX = Math.max(Math.floorDiv(x - reach, cellSize), minCellX);
+        int toX = Math.min(Math.floorDiv(x + reach, cellSize), maxCellX);
+        int fromZ = Math.max(Math.floorDiv(z - reach, cellSize), minCellZ);
+        int toZ = Math.min(Math.floorDiv(z + reach, cellSize), maxCellZ);
+
+        if (fromX > toX || fromZ > toZ) {
+            return Collections.emptyList();
+        }
+
+        if ((long) (toX - fromX + 1) * (toZ - fromZ + 1) > cells.size()) {
+            cells.forEachValue(cell -> cell.collect(x, y, z, Integer.MAX_VALUE, radiusSquared, found));
+        } else {
+            for (int cx = fromX; cx <= toX; cx++) {
+                for (int cz = fromZ; cz <= toZ; cz++) {
+                    Cell cell = cells.get(cellKey(cx, cz));
+                    if (cell != null) {
+                        cell.collect(x, y, z, Integer.MAX_VALUE, radiusSquared, found);
+                    }
+                }
+            }
+        }
+
+        return drain(found);
+    }
+
+    private void scanRing(int centerX, int centerZ, int ring, int x, int y, int z, int k,
+                          PriorityQueue<Candidate<T>> best) {
+        if (ring == 0) {
+            scanCell(centerX, centerZ, x, y, z, k, best);
+            return;
+        }
+
+        for (int offset = -ring; offset <= ring; offset++) {
+            scanCell(centerX + offset, centerZ - ring, x, y, z, k, best);
+            scanCell(centerX + offset, centerZ + ring, x, y, z, k, best);
+        }
+        for (int offset = -ring + 1; offset <= ring - 1; offset++) {
+            scanCell(centerX - ring, centerZ + offset, x, y, z, k, best);
+            scanCell(centerX + ring, centerZ + offset, x, y, z, k, best);
+        }
+    }
+
+    private void scanCell(int cellX, int cellZ, int x, int y, int z, int k, PriorityQueue<Candidate<T>> best) {
+        if (cellX < minCellX || cellX > maxCellX || cellZ < minCellZ || cellZ > maxCellZ) {
+            return;
+        }
+
+        Cell cell = cells.get(cellKey(cellX, cellZ));
+        if (cell != null) {
+            cell.collect(x, y, z, k, Long.MAX_VALUE, best);
+        }
+    }
+
+    private List<T> drain(PriorityQueue<Candidate<T>> queue) {
+        List<T> result = new ArrayList<>(queue.size());
+        while (!queue.isEmpty()) {
+            result.add(queue.poll().value);
+        }
+        Collections.reverse(result);
+        return result;
+    }
+
+    private static long cellKey(int cellX, int cellZ) {
+        return ((long) cellX << 32) | (cellZ & 0xFFFFFFFFL);
+    }
+
+    private static final class Candidate<T> {
+        private final T value;
+        private final long distanceSquared;
+
+        private Candidate(T value, long distanceSquared) {
+            this.value = value;
+            this.distanceSquared = distanceSquared;
+        }
+    }
+
+    private final class Cell {
+        private int[] coordinates = new int[3 * 4];
+        private Object[] values = new Object[4];
+        private int size;
+
+        private void add(int x, int y, int z, T value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+                coordinates = Arrays.copyOf(coordinates, size * 6);
+            }
+            coordinates[size * 3] = x;
+            coordinates[size * 3 + 1] = y;
+            coordinates[size * 3 + 2] = z;
+            values[size++] = value;
+        }
+
+        private boolean remove(T value) {
+            for (int i = 0; i < size; i++) {
+                if (values[i] == value) {
+                    int last = --size;
+                    values[i] = values[last];
+                    System.arraycopy(coordinates, last * 3, coordinates, i * 3, 3);
+                    values[last] = null;
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        @SuppressWarnings("unchecked")
+        private void collect(int x, int y, int z, int k, long maxDistanceSquared,
+                             PriorityQueue<Candidate<T>> best) {
+            for (int i = 0; i < size; i++) {
+                long dx = coordinates[i * 3] - (long) x;
+                long dy = coordinates[i * 3 + 1] - (long) y;
+                long dz = coordinates[i * 3 + 2] - (long) z;
+                long distanceSquared = dx * dx + dy * dy + dz * dz;
+
+                if (distanceSquared > maxDistanceSquared) {
+                    continue;
+                }
+                if (best.size() < k) {
+                    best.add(new Candidate<>((T) values[i], distanceSquared));
+                } else if (distanceSquared < best.peek().distanceSquared) {
+                    best.poll();
+                    best.add(new Candidate<>((T) values[i], distanceSquared));
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,149 @@
+package com.dammnranaah.treasurehunt.utils;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * Hashed timing wheel. Deadlines are bucketed into {@code slotCount} slots of
+ * {@code tickMillis} each; deadlines further out than one revolution share a
+ * slot and are skipped until their own turn comes round. Scheduling and
+ * cancelling are O(1), and advancing only looks at the slots that elapsed.
+ * Not thread-safe.
+ */
+public class TimingWheel<T> {
+
+    private final long tickMillis;
+    private final Node<T>[] slots;
+    private final int mask;
+    private final Map<T, Node<T>> nodes;
+    private long currentTick;
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public TimingWheel(long tickMillis, int slotCount, long nowMillis) {
+        if (tickMillis <= 0 || slotCount <= 0 || Integer.bitCount(slotCount) != 1) {
+            throw new IllegalArgumentException("Tick must be positive and slot count a power of two");
+        }
+        this.tickMillis = tickMillis;
+        this.slots = (Node<T>[]) new Node[slotCount];
+        this.mask = slotCount - 1;
+        this.nodes = new HashMap<>();
+        this.currentTick = nowMillis / tickMillis;
+    }
+
+    /**
+     * Schedules {@code value} to expire at {@code deadlineMillis}, replacing any
+     * earlier schedule for it. Deadlines already in the past expire on the next
+     * {@link #advance}.
+     */
+    public void schedule(T value, long deadlineMillis) {
+        cancel(value);
+
+        long deadlineTick = Math.max(ceilDiv(deadlineMillis, tickMillis), currentTick + 1);
+        Node<T> node = new Node<>(value, deadlineTick);
+        int slot = (int) (deadlineTick & mask);
+
+        node.next = slots[slot];
+        if (node.next != null) {
+            node.next.prev = node;
+        }
+        slots[slot] = node;
+        nodes.put(value, node);
+    }
+
+    public boolean cancel(T value) {
+        Node<T> node = nodes.remove(value);
+        if (node == null) {
+            return false;
+        }
+        unlink(node);
+        return true;
+    }
+
+    public boolean contains(T value) {
+        return nodes.containsKey(value);
+    }
+
+    public int size() {
+        return nodes.size();
+    }
+
+    public void clear() {
+        for (int i = 0; i < slots.length; i++) {
+            slots[i] = null;
+        }
+        nodes.clear();
+    }
+
+    /**
+     * Moves the wheel up to {@code nowMillis} and hands every value whose
+     * deadline has passed to {@code expired}. All expired values are
+     * unscheduled before the first callback runs, so callbacks may schedule
+     * or cancel freely.
+     */
+    public void advance(long nowMillis, Consumer<T> expired) {
+        long targetTick = nowMillis / tickMillis;
+        if (targetTick <= currentTick) {
+            return;
+        }
+
+        // After a long stall a single pass over every slot is enough
+        long firstTick = Math.max(currentTick + 1, targetTick - mask);
+        currentTick = targetTick;
+        List<T> due = null;
+
+        for (long tick = firstTick; tick <= targetTick; tick++) {
+            Node<T> node = slots[(int) (tick & mask)];
+            while (node != null) {
+                Node<T> next = node.next;
+                if (node.deadlineTick <= targetTick) {
+                    nodes.remove(node.value);
+                    unlink(node);
+                    if (due == null) {
+                        due = new ArrayList<>();
+                    }
+                    due.add(node.value);
+                }
+                node = next;
+            }
+        }
+
+        if (due != null) {
+            due.forEach(expired);
+        }
+    }
+
+    private void unlink(Node<T> node) {
+        if (node.prev != null) {
+            node.prev.next = node.next;
+        } else {
+            int slot = (int) (node.deadlineTick & mask);
+            if (slots[slot] == node) {
+                slots[slot] = node.next;
+            }
+        }
+        if (node.next != null) {
+            node.next.prev = node.prev;
+        }
+        node.prev = null;
+        node.next = null;
+    }
+
+    private static long ceilDiv(long value, long divisor) {
+        return -Math.floorDiv(-value, divisor);
+    }
+
+    private static final class Node<T> {
+        private final T value;
+        private final long deadlineTick;
+        private Node<T> prev;
+        private Node<T> next;
+
+        private Node(T value, long deadlineTick) {
+            this.value = value;
+            this.deadlineTick = deadlineTick;
+        }
+    }
+}
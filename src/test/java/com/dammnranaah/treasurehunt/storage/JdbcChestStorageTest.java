@@ -0,0 +1,149 @@
+package com.dammnranaah.treasurehunt.storage;
+
+import com.dammnranaah.treasurehunt.models.ChestRecord;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.Statement;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class JdbcChestStorageTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final Logger logger = Logger.getAnonymousLogger();
+    private File file;
+    private JdbcChestStorage storage;
+
+    @Before
+    public void setUp() throws Exception {
+        logger.setUseParentHandlers(false);
+        file = new File(folder.getRoot(), "chests.db");
+        storage = open();
+    }
+
+    @After
+    public void tearDown() {
+        storage.close();
+    }
+
+    @Test
+    public void batchedChangesAreWrittenInOrder() throws Exception {
+        ChestRecord kept = record("common");
+        ChestRecord removed = record("rare");
+        storage.appendSpawn(kept);
+        storage.appendSpawn(removed);
+        storage.appendLooted(kept.getId());
+        storage.appendLooted(removed.getId());
+        storage.appendRemove(removed.getId());
+
+        Map<UUID, ChestRecord> records = reopen().load().getRecords();
+        assertEquals(1, records.size());
+        assertTrue(records.get(kept.getId()).isLooted());
+        assertEquals("common", records.get(kept.getId()).getTier());
+    }
+
+    @Test
+    public void droppedBatchMarksTableOutOfSyncUntilResync() throws Exception {
+        ChestRecord record = record("common");
+        execute("ALTER TABLE test_chests RENAME TO test_chests_moved");
+        storage.appendSpawn(record);
+        long deadline = System.currentTimeMillis() + 30000L;
+        while (!storage.isOutOfSync() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(50L);
+        }
+        assertTrue(storage.isOutOfSync());
+
+        execute("ALTER TABLE test_chests_moved RENAME TO test_chests");
+        assertTrue(storage.load().getRecords().isEmpty());
+        assertTrue(storage.resync(ChestSnapshot.of(Arrays.asList(record), 0L)).get(30, TimeUnit.SECONDS));
+        assertFalse(storage.isOutOfSync());
+        assertEquals(1, storage.load().getRecords().size());
+    }
+
+    @Test
+    public void failedResyncLeavesTableOutOfSync() throws Exception {
+        execute("ALTER TABLE test_chests RENAME TO test_chests_moved");
+        assertFalse(storage.resync(ChestSnapshot.of(Arrays.asList(record("common")), 0L)).get(30, TimeUnit.SECONDS));
+        assertTrue(storage.isOutOfSync());
+    }
+
+    @Test
+    public void resyncRunsAfterQueuedChanges() throws Exception {
+        ChestRecord pending = record("common");
+        ChestRecord current = record("rare");
+        storage.appendSpawn(pending);
+        storage.appendLooted(pending.getId());
+
+        assertTrue(storage.resync(ChestSnapshot.of(Arrays.asList(current), 0L)).get(30, TimeUnit.SECONDS));
+        ChestRecord later = record("epic");
+        storage.appendSpawn(later);
+
+        Map<UUID, ChestRecord> records = reopen().load().getRecords();
+        assertEquals(2, records.size());
+        assertTrue(records.containsKey(current.getId()));
+        assertTrue(records.containsKey(later.getId()));
+    }
+
+    @Test
+    public void resyncOnlyReplacesThisServersRows() throws Exception {
+        JdbcChestStorage other = JdbcChestStorage.sqlite(file, "test_", "other", 10, logger);
+        other.open();
+        ChestRecord otherRecord = record("common");
+        other.appendSpawn(otherRecord);
+        other.close();
+
+        storage.appendSpawn(record("common"));
+        assertTrue(storage.resync(ChestSnapshot.empty()).get(30, TimeUnit.SECONDS));
+        assertTrue(reopen().load().getRecords().isEmpty());
+
+        other = JdbcChestStorage.sqlite(file, "test_", "other", 10, logger);
+        other.open();
+        try {
+            assertTrue(other.load().getRecords().containsKey(otherRecord.getId()));
+        } finally {
+            other.close();
+        }
+    }
+
+    private JdbcChestStorage open() throws Exception {
+        JdbcChestStorage opened = JdbcChestStorage.sqlite(file, "test_", "test", 2, logger);
+        opened.open();
+        return opened;
+    }
+
+    /**
+     * Closes the storage, which writes everything still queued, and opens it again.
+     */
+    private JdbcChestStorage reopen() throws Exception {
+        storage.close();
+        storage = open();
+        return storage;
+    }
+
+    private void execute(String sql) throws Exception {
+        try (Connection connection = DriverManager.getConnection("jdbc:sqlite:" + file.getAbsolutePath());
+             Statement statement = connection.createStatement()) {
+            statement.executeUpdate(sql);
+        }
+    }
+
+    private static ChestRecord record(String tier) {
+        return new ChestRecord(UUID.randomUUID(), "world", 10, 64, -20, tier, 1000L, false);
+    }
+}